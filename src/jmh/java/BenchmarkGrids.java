@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Grids of the benchmarks, the benchmarks run from the project directory.
+ * tc_8 and tc are the test grids, tc_2x2 and tc_4x4 repeat tc 2 by 2 and 4 by 4 times.
+ */
+class BenchmarkGrids {
+
+    private static final String MAIN_RESOURCES = "src/main/resources/";
+    private static final String TEST_RESOURCES = "src/test/resources/";
+
+    /**
+     * Democrat and republican text file of a grid
+     */
+    static File[] textFiles(String grid) throws IOException {
+        if (grid.equals("tc_8"))
+            return new File[]{new File(TEST_RESOURCES + "dem_tc_8.in"), new File(TEST_RESOURCES + "rep_tc_8.in")};
+        File[] tc = {new File(MAIN_RESOURCES + "dem_tc.in"), new File(MAIN_RESOURCES + "rep_tc.in")};
+        if (grid.equals("tc"))
+            return tc;
+
+        // Repeated grid
+        int factor = tileFactor(grid);
+        CellIndex cells = tile(VoteGridReader.readCells(tc[0], tc[1]), factor);
+        File[] files = {File.createTempFile("dem_" + grid, ".in"), File.createTempFile("rep_" + grid, ".in")};
+        for (File file : files) {
+            file.deleteOnExit();
+        }
+        VoteGridGenerator.writeText(cells, files[0], files[1]);
+        return files;
+    }
+
+    /**
+     * Binary grid file of a grid
+     */
+    static File binaryFile(String grid) throws IOException {
+        File[] text = textFiles(grid);
+        File file = File.createTempFile("grid_" + grid, ".bin");
+        file.deleteOnExit();
+        VoteGridFile.write(VoteGridReader.readCells(text[0], text[1]), file);
+        return file;
+    }
+
+    /**
+     * Election on a grid, the district size of a repeated grid grows with the number of cells
+     */
+    static Election election(String grid) throws IOException {
+        File[] files = textFiles(grid);
+        int districtSize = grid.equals("tc_8") ? 1 : 135 * tileFactor(grid) * tileFactor(grid);
+        int m = grid.equals("tc_8") ? 2 : 200000000;
+        return new Election(files[0].getPath(), files[1].getPath(), districtSize, m);
+    }
+
+    /**
+     * Repetitions per side of a grid named tc_NxN, 1 for the other grids
+     */
+    private static int tileFactor(String grid) {
+        if (!grid.startsWith("tc_") || grid.indexOf('x') < 0)
+            return 1;
+        return Integer.parseInt(grid.substring(3, grid.indexOf('x')));
+    }
+
+    private static CellIndex tile(CellIndex cells, int factor) {
+        CellIndex tiled = new CellIndex(cells.width * factor, cells.height * factor);
+        // Row major order as read from a text grid
+        for (int ty = 0; ty < factor; ty++) {
+            for (int i = 0; i < cells.count; i++) {
+                if (i > 0 && cells.y[i] == cells.y[i - 1])
+                    continue;
+                // First cell of a row, copy the row for every horizontal tile
+                int end = i;
+                while (end < cells.count && cells.y[end] == cells.y[i]) {
+                    end++;
+                }
+                for (int tx = 0; tx < factor; tx++) {
+                    for (int k = i; k < end; k++) {
+                        tiled.add(cells.x[k] + tx * cells.width, cells.y[k] + ty * cells.height, cells.d[k], cells.r[k]);
+                    }
+                }
+            }
+        }
+        return tiled;
+    }
+}
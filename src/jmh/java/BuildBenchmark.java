@@ -0,0 +1,49 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of variables and constraints on cells that are already read
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildBenchmark {
+
+    @Param({"tc_8", "tc", "tc_2x2", "tc_4x4"})
+    public String grid;
+    @Param({"false", "true"})
+    public boolean aggregateCells;
+    /**
+     * Bulk build from primitive arrays without names or the term by term build with names
+     */
+    @Param({"false", "true"})
+    public boolean bulkBuild;
+    /**
+     * GUROBI needs gurobi.jar and a license
+     */
+    @Param({"JAVA"})
+    public SolverBackend solver;
+
+    private Election election;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        election = BenchmarkGrids.election(grid);
+        election.solver = solver;
+        election.aggregateCells = aggregateCells;
+        election.bulkBuild = bulkBuild;
+        election.cells = election.readCells();
+    }
+
+    @Benchmark
+    public MipModel build() throws Exception {
+        election.buildModel(true, true, true);
+        MipModel model = election.model;
+        model.dispose();
+        return model;
+    }
+}
@@ -0,0 +1,46 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading win counts and districting from a solved model and checking them against the votes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractBenchmark {
+
+    @Param({"tc_8", "tc"})
+    public String grid;
+    @Param({"false", "true"})
+    public boolean aggregateCells;
+    @Param({"JAVA"})
+    public SolverBackend solver;
+
+    private Election election;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        election = BenchmarkGrids.election(grid);
+        election.solver = solver;
+        election.aggregateCells = aggregateCells;
+        election.warmStart = true;
+        election.cells = election.readCells();
+        election.buildModel(true, true, true);
+        election.optimizeWins(true);
+    }
+
+    @Benchmark
+    public int[] extract() throws Exception {
+        election.readResults(true, true, true);
+        return election.district;
+    }
+
+    @TearDown(Level.Trial)
+    public void dispose() throws Exception {
+        election.model.dispose();
+    }
+}
@@ -0,0 +1,66 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading vote grids: decoding the integers of a text file, building the populated cells of a
+ * democrat and a republican text file, and loading a binary grid
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"tc_8", "tc", "tc_2x2", "tc_4x4"})
+    public String grid;
+
+    private File democratFile;
+    private File republicanFile;
+    private File binaryFile;
+    private int[] row;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File[] files = BenchmarkGrids.textFiles(grid);
+        democratFile = files[0];
+        republicanFile = files[1];
+        binaryFile = BenchmarkGrids.binaryFile(grid);
+    }
+
+    /**
+     * Sum of all integers of the democrat file
+     */
+    @Benchmark
+    public long tokenize() throws IOException {
+        try (VoteGridReader inp = new VoteGridReader(democratFile)) {
+            int width = inp.nextInt();
+            int height = inp.nextInt();
+            if (row == null || row.length != width) {
+                row = new int[width];
+            }
+            long sum = 0;
+            for (int y = 0; y < height; y++) {
+                inp.readInts(row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    sum += row[x];
+                }
+            }
+            return sum;
+        }
+    }
+
+    @Benchmark
+    public CellIndex readText() throws IOException {
+        return VoteGridReader.readCells(democratFile, republicanFile);
+    }
+
+    @Benchmark
+    public CellIndex readBinary() throws IOException {
+        return VoteGridFile.read(binaryFile);
+    }
+}
@@ -0,0 +1,51 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The optimize call on a freshly built model, including the greedy MIP start.
+ * Maximizing republican wins on tc takes minutes with branch and bound, run it with -p optimizeDemocrats=false.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolveBenchmark {
+
+    @Param({"tc_8", "tc"})
+    public String grid;
+    @Param({"true"})
+    public boolean optimizeDemocrats;
+    @Param({"JAVA"})
+    public SolverBackend solver;
+    @Param({"GIVEN", "TIGHT", "INDICATOR"})
+    public BigM bigM;
+
+    private Election election;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        election = BenchmarkGrids.election(grid);
+        election.solver = solver;
+        election.warmStart = true;
+        election.bigM = bigM;
+        election.cells = election.readCells();
+    }
+
+    @Setup(Level.Invocation)
+    public void build() throws Exception {
+        election.buildModel(true, true, optimizeDemocrats);
+    }
+
+    @Benchmark
+    public double solve() throws Exception {
+        return election.optimizeWins(optimizeDemocrats);
+    }
+
+    @TearDown(Level.Invocation)
+    public void dispose() throws Exception {
+        election.model.dispose();
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * Linking of the win variables VD/VR to the votes of a district
+ */
+public enum BigM {
+    /**
+     * Constant M passed to the election
+     */
+    GIVEN,
+    /**
+     * M from the vote totals: the margin of a district is at most the sum of the positive cell margins
+     */
+    GLOBAL,
+    /**
+     * Smallest valid M from the votes and the district sizes: a district holds between districtSize
+     * and cells - (B - 1) * districtSize cells, each row gets its own coefficient
+     */
+    TIGHT,
+    /**
+     * Indicator constraints instead of big-M rows, solvers without indicator support derive the
+     * coefficients from the variable bounds
+     */
+    INDICATOR
+}
@@ -0,0 +1,953 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pure java {@link MipModel} solved by depth first branch and bound over the LP relaxation
+ * of {@link SimplexSolver}. Runs without gurobi, meant for small and medium models.
+ */
+public class BranchAndBoundModel implements MipModel {
+
+    /**
+     * Tolerance for integer values
+     */
+    private static final double INT_TOL = 1e-9;
+    /**
+     * Tolerance for constraint violations of rounded solutions
+     */
+    private static final double FEAS_TOL = 1e-6;
+    /**
+     * Simplex iteration limit per node
+     */
+    private static final long LP_ITERATION_LIMIT = 1000000;
+
+    // Variables
+    private int varCount;
+    private double[] lb = new double[64];
+    private double[] ub = new double[64];
+    private double[] obj = new double[64];
+    private char[] type = new char[64];
+    private String[] varNames = new String[64];
+
+    // Constraints in compressed rows
+    private int rowCount;
+    private int[] rowStart = new int[65];
+    private int[] rowVars = new int[256];
+    private double[] rowCoeffs = new double[256];
+    private char[] sense = new char[64];
+    private double[] rhs = new double[64];
+    private String[] rowNames = new String[64];
+
+    private int objSense = MINIMIZE;
+    private double timeLimit = Double.POSITIVE_INFINITY;
+    private ProgressListener listener;
+    private LazyConstraints lazy;
+    /**
+     * MIP starts, NaN for variables without start value
+     */
+    private double[][] starts = new double[1][];
+    /**
+     * Start set by setStart
+     */
+    private int startNumber;
+
+    // Results
+    private int status = LOADED;
+    private double[] solution;
+    private double objVal;
+    private double firstSolutionTime = -1;
+    // Results of each objective of optimizeObjectives
+    private int[] objectiveStatus;
+    private double[][] objectiveSolution;
+    private double[] objectiveObjVal;
+    private double[] objectiveFirstSolutionTime;
+    /**
+     * Number of explored nodes
+     */
+    public long nodeCount;
+    /**
+     * Number of simplex iterations
+     */
+    public long iterationCount;
+
+    @Override
+    public int addVar(double lb, double ub, double obj, char type, String name) {
+        if (varCount == this.lb.length) {
+            int capacity = 2 * varCount;
+            this.lb = Arrays.copyOf(this.lb, capacity);
+            this.ub = Arrays.copyOf(this.ub, capacity);
+            this.obj = Arrays.copyOf(this.obj, capacity);
+            this.type = Arrays.copyOf(this.type, capacity);
+            varNames = Arrays.copyOf(varNames, capacity);
+        }
+        if (type == BINARY) {
+            lb = Math.max(lb, 0.0);
+            ub = Math.min(ub, 1.0);
+        }
+        this.lb[varCount] = lb;
+        this.ub[varCount] = ub;
+        this.obj[varCount] = obj;
+        this.type[varCount] = type;
+        varNames[varCount] = name;
+        return varCount++;
+    }
+
+    @Override
+    public int addVars(int count, double lb, double ub, char type, String[] names) {
+        int first = varCount;
+        for (int k = 0; k < count; k++) {
+            addVar(lb, ub, 0.0, type, names != null ? names[k] : null);
+        }
+        return first;
+    }
+
+    @Override
+    public int addConstr(LinearExpr expr, char sense, double rhs, String name) {
+        return addRow(expr.vars, expr.coeffs, 0, expr.size, sense, rhs, name);
+    }
+
+    @Override
+    public int addConstrs(int count, int[] start, int[] vars, double[] coeffs, char[] sense, double[] rhs,
+                          String[] names) {
+        int first = rowCount;
+        for (int k = 0; k < count; k++) {
+            addRow(vars, coeffs, start[k], start[k + 1], sense[k], rhs[k], names != null ? names[k] : null);
+        }
+        return first;
+    }
+
+    /**
+     * Append the row with the terms from to to - 1 of vars and coeffs, terms are sorted by
+     * variable and duplicates are merged
+     */
+    private int addRow(int[] vars, double[] coeffs, int from, int to, char sense, double rhs, String name) {
+        if (rowCount == this.sense.length) {
+            int capacity = 2 * this.sense.length;
+            rowStart = Arrays.copyOf(rowStart, capacity + 1);
+            this.sense = Arrays.copyOf(this.sense, capacity);
+            this.rhs = Arrays.copyOf(this.rhs, capacity);
+            rowNames = Arrays.copyOf(rowNames, capacity);
+        }
+        int size = to - from;
+        int start = rowStart[rowCount];
+        if (start + size > rowVars.length) {
+            int capacity = Math.max(2 * rowVars.length, start + size);
+            rowVars = Arrays.copyOf(rowVars, capacity);
+            rowCoeffs = Arrays.copyOf(rowCoeffs, capacity);
+        }
+
+        boolean sorted = true;
+        for (int t = from + 1; t < to && sorted; t++) {
+            sorted = vars[t - 1] < vars[t];
+        }
+        int end = start;
+        if (sorted) {
+            // Rows built in variable order are copied as they are
+            System.arraycopy(vars, from, rowVars, start, size);
+            System.arraycopy(coeffs, from, rowCoeffs, start, size);
+            end += size;
+        } else {
+            // Merge duplicate variables
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) vars[from + i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < size; i++) {
+                int t = from + (int) keys[i];
+                int var = vars[t];
+                if (end > start && rowVars[end - 1] == var) {
+                    rowCoeffs[end - 1] += coeffs[t];
+                } else {
+                    rowVars[end] = var;
+                    rowCoeffs[end] = coeffs[t];
+                    end++;
+                }
+            }
+        }
+
+        this.sense[rowCount] = sense;
+        this.rhs[rowCount] = rhs;
+        rowNames[rowCount] = name;
+        rowCount++;
+        rowStart[rowCount] = end;
+        return rowCount - 1;
+    }
+
+    /**
+     * Indicators become big-M rows, M is derived from the variable bounds of expr
+     */
+    @Override
+    public void addIndicator(int binVar, int binVal, LinearExpr expr, char sense, double rhs, String name) {
+        if (sense == EQUAL) {
+            addIndicator(binVar, binVal, expr, LESS_EQUAL, rhs, name + "_le");
+            addIndicator(binVar, binVal, expr, GREATER_EQUAL, rhs, name + "_ge");
+            return;
+        }
+
+        // Activity range of expr
+        double min = 0;
+        double max = 0;
+        for (int i = 0; i < expr.size; i++) {
+            double coeff = expr.coeffs[i];
+            int var = expr.vars[i];
+            min += coeff * (coeff > 0 ? lb[var] : ub[var]);
+            max += coeff * (coeff > 0 ? ub[var] : lb[var]);
+        }
+        // Violation of the constraint if it is not enforced
+        double m = sense == GREATER_EQUAL ? rhs - min : max - rhs;
+        if (m <= 0)
+            return;
+
+        // expr >= rhs - m * (1 - binVar) for binVal 1, expr >= rhs - m * binVar for binVal 0
+        double sign = sense == GREATER_EQUAL ? 1 : -1;
+        LinearExpr row = new LinearExpr(expr.size + 1);
+        row.add(expr);
+        row.addTerm(binVal == 1 ? -sign * m : sign * m, binVar);
+        addConstr(row, sense, binVal == 1 ? rhs - sign * m : rhs, name);
+    }
+
+    @Override
+    public void setRhs(int row, double rhs) {
+        this.rhs[row] = rhs;
+    }
+
+    /**
+     * Terms of a row are sorted by variable, a missing term is inserted into the compressed rows
+     */
+    @Override
+    public void setCoefficient(int row, int var, double coeff) {
+        int pos = Arrays.binarySearch(rowVars, rowStart[row], rowStart[row + 1], var);
+        if (pos >= 0) {
+            rowCoeffs[pos] = coeff;
+            return;
+        }
+        pos = -pos - 1;
+        int nonzeroCount = rowStart[rowCount];
+        if (nonzeroCount == rowVars.length) {
+            rowVars = Arrays.copyOf(rowVars, 2 * nonzeroCount);
+            rowCoeffs = Arrays.copyOf(rowCoeffs, 2 * nonzeroCount);
+        }
+        System.arraycopy(rowVars, pos, rowVars, pos + 1, nonzeroCount - pos);
+        System.arraycopy(rowCoeffs, pos, rowCoeffs, pos + 1, nonzeroCount - pos);
+        rowVars[pos] = var;
+        rowCoeffs[pos] = coeff;
+        for (int i = row + 1; i <= rowCount; i++) {
+            rowStart[i]++;
+        }
+    }
+
+    @Override
+    public void setBounds(int var, double lb, double ub) {
+        this.lb[var] = lb;
+        this.ub[var] = ub;
+    }
+
+    @Override
+    public void setObjective(LinearExpr expr, int sense) {
+        Arrays.fill(obj, 0.0);
+        for (int i = 0; i < expr.size; i++) {
+            obj[expr.vars[i]] += expr.coeffs[i];
+        }
+        objSense = sense;
+    }
+
+    @Override
+    public void setStart(int var, double value) {
+        double[] start = starts[startNumber];
+        if (start == null || start.length < varCount) {
+            int oldLength = start == null ? 0 : start.length;
+            start = start == null ? new double[varCount] : Arrays.copyOf(start, varCount);
+            Arrays.fill(start, oldLength, varCount, Double.NaN);
+            starts[startNumber] = start;
+        }
+        start[var] = value;
+    }
+
+    @Override
+    public void selectStart(int k) {
+        if (k >= starts.length) {
+            starts = Arrays.copyOf(starts, k + 1);
+        }
+        startNumber = k;
+    }
+
+    /**
+     * Branch and bound runs single threaded
+     */
+    @Override
+    public void setThreads(int threads) {
+    }
+
+    @Override
+    public void setTimeLimit(double seconds) {
+        timeLimit = seconds;
+    }
+
+    @Override
+    public void optimize() {
+        long startTime = System.currentTimeMillis();
+
+        // Minimize internally
+        double[] cost = new double[varCount];
+        boolean integralObjective = true;
+        for (int j = 0; j < varCount; j++) {
+            cost[j] = objSense == MAXIMIZE ? -obj[j] : obj[j];
+            if (cost[j] != 0 && (type[j] == CONTINUOUS || cost[j] != Math.rint(cost[j]))) {
+                integralObjective = false;
+            }
+        }
+        double[] rootLb = Arrays.copyOf(lb, varCount);
+        double[] rootUb = Arrays.copyOf(ub, varCount);
+
+        // Depth first search over bound changes
+        double incumbent = Double.POSITIVE_INFINITY;
+        // Incumbent changed since the last progress report
+        boolean improved = false;
+        long nextProgress = startTime;
+        solution = null;
+        firstSolutionTime = -1;
+        for (double[] start : starts) {
+            if (!acceptStart(start) || addLazyConstraints(start))
+                continue;
+            // Best MIP start is the first incumbent
+            double startObjective = 0;
+            for (int j = 0; j < varCount; j++) {
+                startObjective += cost[j] * start[j];
+            }
+            if (startObjective < incumbent) {
+                improved = true;
+                solution = Arrays.copyOf(start, varCount);
+                incumbent = startObjective;
+                firstSolutionTime = (System.currentTimeMillis() - startTime) / 1000d;
+            }
+        }
+        // Rows added by lazy constraints of the starts are part of the relaxation
+        SimplexSolver lp = relaxation(cost, rootLb, rootUb);
+        iterationCount = 0;
+        nodeCount = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(new Node(null, -1, 0, 0, Double.NEGATIVE_INFINITY));
+        Node applied = null;
+        int[] stamp = new int[varCount];
+        int stampValue = 0;
+        // Some node could not be solved within the iteration limit
+        boolean incomplete = false;
+        boolean timeLimitReached = false;
+        while (!stack.isEmpty()) {
+            if (timeLimit < Double.POSITIVE_INFINITY && System.currentTimeMillis() - startTime >= 1000 * timeLimit) {
+                timeLimitReached = true;
+                break;
+            }
+            if (listener != null) {
+                long now = System.currentTimeMillis();
+                if (improved || now >= nextProgress) {
+                    reportProgress(stack, incumbent, startTime, now);
+                    nextProgress = now + (long) (1000 * ProgressListener.INTERVAL);
+                    improved = false;
+                }
+            }
+
+            Node node = stack.pop();
+            if (pruned(node.bound, incumbent, integralObjective))
+                continue;
+
+            // Reset bounds of the last node and apply bounds of this node
+            for (Node n = applied; n != null && n.var >= 0; n = n.parent) {
+                lp.setBounds(n.var, rootLb[n.var], rootUb[n.var]);
+            }
+            stampValue++;
+            for (Node n = node; n != null && n.var >= 0; n = n.parent) {
+                if (stamp[n.var] != stampValue) {
+                    stamp[n.var] = stampValue;
+                    lp.setBounds(n.var, n.lb, n.ub);
+                }
+            }
+            applied = node;
+
+            nodeCount++;
+            int lpStatus = lp.solve(LP_ITERATION_LIMIT, cutoff(incumbent, integralObjective));
+            if (lpStatus == NUMERIC) {
+                incomplete = true;
+            }
+            if (lpStatus != OPTIMAL)
+                continue;
+            double bound = lp.objective();
+            if (integralObjective) {
+                bound = Math.ceil(bound - FEAS_TOL);
+            }
+            if (pruned(bound, incumbent, integralObjective))
+                continue;
+
+            int var = branchingVariable(lp.x, cost);
+            if (var < 0) {
+                double[] rounded = roundedSolution(lp.x);
+                if (feasible(rounded)) {
+                    if (addLazyConstraints(rounded)) {
+                        // Solve the node again on a relaxation with the added rows
+                        iterationCount += lp.iterations;
+                        lp = relaxation(cost, rootLb, rootUb);
+                        applied = null;
+                        stack.push(node);
+                        continue;
+                    }
+                    if (solution == null) {
+                        firstSolutionTime = (System.currentTimeMillis() - startTime) / 1000d;
+                    }
+                    solution = rounded;
+                    improved = true;
+                    incumbent = 0;
+                    for (int j = 0; j < varCount; j++) {
+                        incumbent += cost[j] * rounded[j];
+                    }
+                    continue;
+                }
+                var = mostFractionalVariable(lp.x);
+                if (var < 0)
+                    continue;
+            }
+
+            // Push the preferred child last to explore it first
+            double v = lp.x[var];
+            double lo = lp.lower[var];
+            double hi = lp.upper[var];
+            Node down = new Node(node, var, lo, Math.floor(v), bound);
+            Node up = new Node(node, var, Math.ceil(v), hi, bound);
+            boolean upFirst = cost[var] != 0 ? cost[var] < 0 : v - Math.floor(v) >= 0.5;
+            if (upFirst) {
+                stack.push(down);
+                stack.push(up);
+            } else {
+                stack.push(up);
+                stack.push(down);
+            }
+        }
+        iterationCount += lp.iterations;
+        if (listener != null) {
+            reportProgress(stack, incumbent, startTime, System.currentTimeMillis());
+        }
+
+        if (timeLimitReached) {
+            status = TIME_LIMIT;
+        } else if (incomplete) {
+            status = NUMERIC;
+        } else if (solution == null) {
+            status = INFEASIBLE;
+        } else {
+            status = OPTIMAL;
+        }
+        if (solution != null) {
+            objVal = objSense == MAXIMIZE ? -incumbent : incumbent;
+        }
+
+        if (listener == null) {
+            printSummary(startTime);
+        }
+    }
+
+    /**
+     * Print nodes, time and outcome of the search, the listener gets them as progress otherwise
+     */
+    private void printSummary(long startTime) {
+        double exec = (System.currentTimeMillis() - startTime) / 1000d;
+        System.out.println("Explored " + nodeCount + " nodes (" + iterationCount + " simplex iterations) in " + exec + " seconds");
+        if (status == OPTIMAL) {
+            System.out.println("Optimal solution found, objective " + objVal);
+        } else if (status == TIME_LIMIT) {
+            System.out.println("Time limit reached, " + (solution != null ? "best objective " + objVal : "no solution found"));
+        } else if (status == NUMERIC) {
+            System.out.println("Iteration limit reached in some nodes, optimality not proven");
+        } else {
+            System.out.println("Model is infeasible");
+        }
+    }
+
+    /**
+     * LP relaxation of the current rows with the given cost and root bounds
+     */
+    private SimplexSolver relaxation(double[] cost, double[] rootLb, double[] rootUb) {
+        // Convert rows to columns
+        int[] colStart = new int[varCount + 1];
+        int nonzeroCount = rowStart[rowCount];
+        for (int k = 0; k < nonzeroCount; k++) {
+            colStart[rowVars[k] + 1]++;
+        }
+        for (int j = 0; j < varCount; j++) {
+            colStart[j + 1] += colStart[j];
+        }
+        int[] fill = Arrays.copyOf(colStart, varCount);
+        int[] rowIndex = new int[nonzeroCount];
+        double[] value = new double[nonzeroCount];
+        for (int i = 0; i < rowCount; i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                int pos = fill[rowVars[k]]++;
+                rowIndex[pos] = i;
+                value[pos] = rowCoeffs[k];
+            }
+        }
+        double[] rowLower = new double[rowCount];
+        double[] rowUpper = new double[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            rowLower[i] = sense[i] == LESS_EQUAL ? Double.NEGATIVE_INFINITY : rhs[i];
+            rowUpper[i] = sense[i] == GREATER_EQUAL ? Double.POSITIVE_INFINITY : rhs[i];
+        }
+        return new SimplexSolver(rowCount, varCount, colStart, rowIndex, value, cost,
+                rootLb, rootUb, rowLower, rowUpper);
+    }
+
+    /**
+     * Pass solution x to the lazy constraints, returns true if x violates an added row.
+     * Added rows stay in the model for later optimizations.
+     */
+    private boolean addLazyConstraints(double[] x) {
+        if (lazy == null)
+            return false;
+        try {
+            lazy.separate(x, (expr, sense, rhs) -> addConstr(expr, sense, rhs, "lazy_" + rowCount));
+        } catch (Exception e) {
+            throw new IllegalStateException("Separation of lazy constraints failed", e);
+        }
+        return !feasible(x);
+    }
+
+    /**
+     * Objectives are optimized one after the other. The optima of earlier objectives are used as
+     * additional MIP starts of the later ones, since all objectives share the constraints.
+     */
+    @Override
+    public void optimizeObjectives(LinearExpr[] objectives, int sense) {
+        int count = objectives.length;
+        objectiveStatus = new int[count];
+        objectiveSolution = new double[count][];
+        objectiveObjVal = new double[count];
+        objectiveFirstSolutionTime = new double[count];
+        double[][] ownStarts = starts;
+        for (int k = 0; k < count; k++) {
+            setObjective(objectives[k], sense);
+            optimize();
+            objectiveStatus[k] = status;
+            objectiveSolution[k] = solution;
+            objectiveObjVal[k] = objVal;
+            objectiveFirstSolutionTime[k] = firstSolutionTime;
+            if (solution != null) {
+                starts = Arrays.copyOf(starts, starts.length + 1);
+                starts[starts.length - 1] = solution;
+            }
+        }
+        starts = ownStarts;
+        selectObjective(0);
+    }
+
+    @Override
+    public void selectObjective(int k) {
+        status = objectiveStatus[k];
+        solution = objectiveSolution[k];
+        objVal = objectiveObjVal[k];
+        firstSolutionTime = objectiveFirstSolutionTime[k];
+    }
+
+    @Override
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void setLazyConstraints(LazyConstraints lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Best bound is the smallest bound of the open nodes, values are converted to the objective sense
+     */
+    private void reportProgress(Deque<Node> stack, double incumbent, long startTime, long now) {
+        double bound = incumbent;
+        for (Node node : stack) {
+            bound = Math.min(bound, node.bound);
+        }
+        listener.progress((now - startTime) / 1000d, objectiveValue(incumbent), objectiveValue(bound), nodeCount);
+    }
+
+    private double objectiveValue(double internal) {
+        if (Double.isInfinite(internal))
+            return Double.NaN;
+        return objSense == MAXIMIZE ? -internal : internal;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public double getValue(int var) {
+        if (solution == null)
+            throw new IllegalStateException("No solution available");
+        return solution[var];
+    }
+
+    @Override
+    public double[] getValues() {
+        if (solution == null)
+            throw new IllegalStateException("No solution available");
+        return Arrays.copyOf(solution, varCount);
+    }
+
+    @Override
+    public double getFirstSolutionTime() {
+        return firstSolutionTime;
+    }
+
+    /**
+     * Objective value of the best solution
+     */
+    public double getObjVal() {
+        return objVal;
+    }
+
+    /**
+     * Write model in free MPS format
+     */
+    @Override
+    public void write(String filename) throws IOException {
+        OutputStream file = Files.newOutputStream(Paths.get(filename));
+        if (filename.endsWith(".gz")) {
+            file = new GZIPOutputStream(file, 1 << 16);
+        }
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(file, StandardCharsets.US_ASCII), false)) {
+            out.println("NAME (null)");
+            out.println("OBJSENSE " + (objSense == MAXIMIZE ? "MAX" : "MIN"));
+            out.println("ROWS");
+            out.println(" N  OBJ");
+            for (int i = 0; i < rowCount; i++) {
+                char s = sense[i] == LESS_EQUAL ? 'L' : sense[i] == GREATER_EQUAL ? 'G' : 'E';
+                out.println(" " + s + "  " + rowName(i));
+            }
+
+            // Columns need the constraint matrix by variable
+            int[][] colRows = new int[varCount][];
+            double[][] colValues = new double[varCount][];
+            int[] count = new int[varCount];
+            for (int k = 0; k < rowStart[rowCount]; k++) {
+                count[rowVars[k]]++;
+            }
+            for (int j = 0; j < varCount; j++) {
+                colRows[j] = new int[count[j]];
+                colValues[j] = new double[count[j]];
+                count[j] = 0;
+            }
+            for (int i = 0; i < rowCount; i++) {
+                for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                    int j = rowVars[k];
+                    colRows[j][count[j]] = i;
+                    colValues[j][count[j]++] = rowCoeffs[k];
+                }
+            }
+            out.println("COLUMNS");
+            boolean inInteger = false;
+            for (int j = 0; j < varCount; j++) {
+                boolean integer = type[j] != CONTINUOUS;
+                if (integer != inInteger) {
+                    out.println("    MARKER                 'MARKER'                 " + (integer ? "'INTORG'" : "'INTEND'"));
+                    inInteger = integer;
+                }
+                if (obj[j] != 0 || colRows[j].length == 0) {
+                    // Every column is listed, so read keeps the variable indices
+                    out.println("    " + varName(j) + "  OBJ  " + obj[j]);
+                }
+                for (int k = 0; k < colRows[j].length; k++) {
+                    out.println("    " + varName(j) + "  " + rowName(colRows[j][k]) + "  " + colValues[j][k]);
+                }
+            }
+            if (inInteger) {
+                out.println("    MARKER                 'MARKER'                 'INTEND'");
+            }
+            out.println("RHS");
+            for (int i = 0; i < rowCount; i++) {
+                if (rhs[i] != 0) {
+                    out.println("    RHS1  " + rowName(i) + "  " + rhs[i]);
+                }
+            }
+            out.println("BOUNDS");
+            for (int j = 0; j < varCount; j++) {
+                if (type[j] == BINARY) {
+                    out.println(" BV BND1  " + varName(j));
+                    continue;
+                }
+                if (lb[j] != 0) {
+                    out.println(" LO BND1  " + varName(j) + "  " + lb[j]);
+                }
+                if (ub[j] < Double.POSITIVE_INFINITY) {
+                    out.println(" UP BND1  " + varName(j) + "  " + ub[j]);
+                }
+            }
+            out.println("ENDATA");
+        }
+    }
+
+    /**
+     * Reads the MPS files of {@link #write}, the objective row is named OBJ
+     */
+    @Override
+    public void read(String filename) throws IOException {
+        if (varCount > 0 || rowCount > 0)
+            throw new IllegalStateException("Model is not empty");
+        InputStream file = Files.newInputStream(Paths.get(filename));
+        if (filename.endsWith(".gz")) {
+            file = new GZIPInputStream(file, 1 << 16);
+        }
+
+        Map<String, Integer> varIndex = new HashMap<>();
+        Map<String, Integer> rowIndex = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        List<Character> senses = new ArrayList<>();
+        List<LinearExpr> exprs = new ArrayList<>();
+        double[] rowRhs = new double[0];
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(file, StandardCharsets.US_ASCII))) {
+            String section = "";
+            boolean integer = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                String[] tokens = line.trim().split("\\s+");
+                if (!Character.isWhitespace(line.charAt(0))) {
+                    // Section header, OBJSENSE may carry its value on the same line
+                    section = tokens[0];
+                    if (section.equals("OBJSENSE") && tokens.length > 1) {
+                        objSense = tokens[1].equals("MAX") ? MAXIMIZE : MINIMIZE;
+                    }
+                    if (section.equals("RHS")) {
+                        rowRhs = new double[names.size()];
+                    }
+                    continue;
+                }
+                switch (section) {
+                    case "OBJSENSE":
+                        objSense = tokens[0].equals("MAX") ? MAXIMIZE : MINIMIZE;
+                        break;
+                    case "ROWS":
+                        if (tokens[0].equals("N"))
+                            break;
+                        rowIndex.put(tokens[1], names.size());
+                        names.add(tokens[1]);
+                        senses.add(tokens[0].equals("L") ? LESS_EQUAL : tokens[0].equals("G") ? GREATER_EQUAL : EQUAL);
+                        exprs.add(new LinearExpr());
+                        break;
+                    case "COLUMNS":
+                        if (tokens[1].equals("'MARKER'")) {
+                            integer = tokens[2].equals("'INTORG'");
+                            break;
+                        }
+                        Integer var = varIndex.get(tokens[0]);
+                        if (var == null) {
+                            var = addVar(0.0, Double.POSITIVE_INFINITY, 0.0, integer ? INTEGER : CONTINUOUS, tokens[0]);
+                            varIndex.put(tokens[0], var);
+                        }
+                        for (int k = 1; k + 1 < tokens.length; k += 2) {
+                            Integer row = rowIndex.get(tokens[k]);
+                            double value = Double.parseDouble(tokens[k + 1]);
+                            if (row == null) {
+                                obj[var] = value;
+                            } else {
+                                exprs.get(row).addTerm(value, var);
+                            }
+                        }
+                        break;
+                    case "RHS":
+                        for (int k = 1; k + 1 < tokens.length; k += 2) {
+                            Integer row = rowIndex.get(tokens[k]);
+                            if (row != null) {
+                                rowRhs[row] = Double.parseDouble(tokens[k + 1]);
+                            }
+                        }
+                        break;
+                    case "BOUNDS":
+                        int j = varIndex.get(tokens[2]);
+                        double value = tokens.length > 3 ? Double.parseDouble(tokens[3]) : 0.0;
+                        switch (tokens[0]) {
+                            case "BV":
+                                type[j] = BINARY;
+                                lb[j] = 0.0;
+                                ub[j] = 1.0;
+                                break;
+                            case "LO":
+                                lb[j] = value;
+                                break;
+                            case "UP":
+                                ub[j] = value;
+                                break;
+                            case "FX":
+                                lb[j] = value;
+                                ub[j] = value;
+                                break;
+                            case "MI":
+                                lb[j] = Double.NEGATIVE_INFINITY;
+                                break;
+                            default:
+                                ub[j] = Double.POSITIVE_INFINITY;
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unsupported MPS section " + section + ": " + filename);
+                }
+            }
+        }
+        for (int i = 0; i < names.size(); i++) {
+            addConstr(exprs.get(i), senses.get(i), i < rowRhs.length ? rowRhs[i] : 0.0, names.get(i));
+        }
+    }
+
+    @Override
+    public void dispose() {
+        solution = null;
+    }
+
+    private String varName(int j) {
+        return varNames[j] != null ? varNames[j] : "C" + j;
+    }
+
+    private String rowName(int i) {
+        return rowNames[i] != null ? rowNames[i] : "R" + i;
+    }
+
+    /**
+     * Largest LP bound of a node that can still improve the incumbent
+     */
+    private double cutoff(double incumbent, boolean integralObjective) {
+        if (incumbent == Double.POSITIVE_INFINITY)
+            return Double.POSITIVE_INFINITY;
+        return integralObjective ? incumbent - 1 + FEAS_TOL : incumbent - FEAS_TOL;
+    }
+
+    /**
+     * Node can not improve the incumbent
+     */
+    private boolean pruned(double bound, double incumbent, boolean integralObjective) {
+        if (incumbent == Double.POSITIVE_INFINITY)
+            return false;
+        return integralObjective ? bound > incumbent - 0.5 : bound >= incumbent - FEAS_TOL;
+    }
+
+    /**
+     * Fractional integer variable to branch on, variables of the objective first, -1 if none
+     */
+    private int branchingVariable(double[] x, double[] cost) {
+        int best = -1;
+        double bestScore = 0;
+        boolean bestInObjective = false;
+        for (int j = 0; j < varCount; j++) {
+            if (type[j] == CONTINUOUS)
+                continue;
+            double frac = x[j] - Math.floor(x[j]);
+            double score = Math.min(frac, 1 - frac);
+            if (score <= INT_TOL)
+                continue;
+            boolean inObjective = cost[j] != 0;
+            if (best < 0 || (inObjective && !bestInObjective) || (inObjective == bestInObjective && score > bestScore)) {
+                best = j;
+                bestScore = score;
+                bestInObjective = inObjective;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Integer variable with the largest distance to its rounded value, -1 if all are integral
+     */
+    private int mostFractionalVariable(double[] x) {
+        int best = -1;
+        double bestScore = 0;
+        for (int j = 0; j < varCount; j++) {
+            if (type[j] == CONTINUOUS)
+                continue;
+            double score = Math.abs(x[j] - Math.rint(x[j]));
+            if (score > bestScore) {
+                best = j;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private double[] roundedSolution(double[] x) {
+        double[] rounded = Arrays.copyOf(x, varCount);
+        for (int j = 0; j < varCount; j++) {
+            if (type[j] != CONTINUOUS) {
+                rounded[j] = Math.rint(rounded[j]);
+            }
+        }
+        return rounded;
+    }
+
+    /**
+     * MIP start sets every variable to an integral value within its bounds and satisfies all constraints
+     */
+    private boolean acceptStart(double[] start) {
+        if (start == null || start.length < varCount)
+            return false;
+        for (int j = 0; j < varCount; j++) {
+            double v = start[j];
+            if (Double.isNaN(v) || v < lb[j] - FEAS_TOL || v > ub[j] + FEAS_TOL)
+                return false;
+            if (type[j] != CONTINUOUS && v != Math.rint(v))
+                return false;
+        }
+        return feasible(start);
+    }
+
+    /**
+     * Check all constraints for the given solution
+     */
+    private boolean feasible(double[] x) {
+        for (int i = 0; i < rowCount; i++) {
+            double activity = 0;
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                activity += rowCoeffs[k] * x[rowVars[k]];
+            }
+            if (sense[i] != LESS_EQUAL && activity < rhs[i] - FEAS_TOL)
+                return false;
+            if (sense[i] != GREATER_EQUAL && activity > rhs[i] + FEAS_TOL)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Branch and bound node given by a bound change of one variable and its parent
+     */
+    private static class Node {
+        final Node parent;
+        final int var;
+        final double lb;
+        final double ub;
+        /**
+         * LP bound of the parent
+         */
+        final double bound;
+
+        Node(Node parent, int var, double lb, double ub, double bound) {
+            this.parent = parent;
+            this.var = var;
+            this.lb = lb;
+            this.ub = ub;
+            this.bound = bound;
+        }
+    }
+}
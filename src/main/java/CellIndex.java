@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Populated cells of a vote grid stored as flat primitive arrays, ordered by row and column.
+ * Uninhabited cells are not stored, so memory scales with the number of populated cells.
+ */
+public class CellIndex {
+
+    /**
+     * Width of the grid
+     */
+    public final int width;
+    /**
+     * Height of the grid
+     */
+    public final int height;
+    /**
+     * Number of stored cells
+     */
+    public int count;
+    /**
+     * x coordinate of cell i
+     */
+    public int[] x;
+    /**
+     * y coordinate of cell i
+     */
+    public int[] y;
+    /**
+     * Democrat votes of cell i
+     */
+    public int[] d;
+    /**
+     * Republican votes of cell i
+     */
+    public int[] r;
+
+    public CellIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        x = new int[16];
+        y = new int[16];
+        d = new int[16];
+        r = new int[16];
+    }
+
+    /**
+     * Append cell with coordinates (x,y), cells have to be added in row major order
+     */
+    public void add(int x, int y, int d, int r) {
+        if (count == this.x.length) {
+            int capacity = 2 * count;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.d = Arrays.copyOf(this.d, capacity);
+            this.r = Arrays.copyOf(this.r, capacity);
+        }
+        this.x[count] = x;
+        this.y[count] = y;
+        this.d[count] = d;
+        this.r[count] = r;
+        count++;
+    }
+
+    /**
+     * Index of the cell with coordinates (x,y), -1 if the cell is not populated
+     */
+    public int indexOf(int x, int y) {
+        // Binary search in row major order
+        long key = (long) y * width + x;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = (long) this.y[mid] * width + this.x[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copy with the cells (x[k],y[k]) added without votes, cells that are already stored keep their votes
+     */
+    public CellIndex withCells(int[] x, int[] y) {
+        long[] keys = new long[x.length];
+        for (int k = 0; k < x.length; k++) {
+            if (x[k] < 0 || x[k] >= width || y[k] < 0 || y[k] >= height)
+                throw new IllegalArgumentException("Cell (" + x[k] + "," + y[k] + ") is outside the grid");
+            keys[k] = (long) y[k] * width + x[k];
+        }
+        Arrays.sort(keys);
+
+        // Merge in row major order, duplicates are added once
+        CellIndex merged = new CellIndex(width, height);
+        long last = -1;
+        int k = 0;
+        for (int i = 0; i <= count; i++) {
+            long key = i < count ? (long) this.y[i] * width + this.x[i] : Long.MAX_VALUE;
+            for (; k < keys.length && keys[k] <= key; k++) {
+                if (keys[k] != key && keys[k] != last) {
+                    merged.add((int) (keys[k] % width), (int) (keys[k] / width), 0, 0);
+                    last = keys[k];
+                }
+            }
+            if (i < count) {
+                merged.add(this.x[i], this.y[i], d[i], r[i]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Neighbours on the 4-neighbour grid: entry 4 * i + k is the populated neighbour k of cell i,
+     * left, right, up and down, -1 if there is none
+     */
+    public int[] neighbours() {
+        // Cells are stored in row major order, so vertical neighbours are found by binary search
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (long) y[i] * width + x[i];
+        }
+        int[] neighbour = new int[4 * count];
+        for (int i = 0; i < count; i++) {
+            neighbour[4 * i] = i > 0 && keys[i - 1] == keys[i] - 1 && x[i] > 0 ? i - 1 : -1;
+            neighbour[4 * i + 1] = i + 1 < count && keys[i + 1] == keys[i] + 1 && x[i] + 1 < width ? i + 1 : -1;
+            int up = Arrays.binarySearch(keys, 0, i, keys[i] - width);
+            neighbour[4 * i + 2] = up >= 0 ? up : -1;
+            int down = Arrays.binarySearch(keys, i + 1, count, keys[i] + width);
+            neighbour[4 * i + 3] = down >= 0 ? down : -1;
+        }
+        return neighbour;
+    }
+}
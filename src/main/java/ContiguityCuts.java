@@ -0,0 +1,278 @@
+import java.util.Arrays;
+
+/**
+ * Lazy constraints that keep every district connected on the 4-neighbour grid. Uninhabited cells
+ * are not part of the model, but they do not separate districts: every region of uninhabited cells
+ * is a connector that any district may cross, so populated cells bordering the same region are
+ * neighbours. A populated cell surrounded by uninhabited cells can join the districts around it.
+ * A district of a candidate that falls apart into several components is cut for every component S
+ * except the largest one: for a cell i of S and a cell j of the largest component
+ * C[i][b] + C[j][b] - sum of C[k][b] over the neighbours k of S <= 1,
+ * since a connected district containing i and j has to leave S through one of its neighbours.
+ * The cut is added for every district, since the districts are interchangeable.
+ */
+public class ContiguityCuts implements MipModel.LazyConstraints {
+
+    private final CellIndex cells;
+    // C[i][b] = district of populated cell i
+    private final int[][] C;
+    private final int districts;
+    // neighbour[4 * i + k] = populated neighbour k of cell i, -1 if none
+    private final int[] neighbour;
+    // Connectors of cell i are cellConnector[cellStart[i]] to cellConnector[cellStart[i + 1] - 1]
+    private int[] cellStart;
+    private int[] cellConnector;
+    // Cells bordering connector g are connectorCell[connectorStart[g]] to connectorCell[connectorStart[g + 1] - 1]
+    private int[] connectorStart;
+    private int[] connectorCell;
+    /**
+     * Number of cuts added so far
+     */
+    public int cutCount;
+
+    public ContiguityCuts(CellIndex cells, int[][] C, int districts) {
+        this.cells = cells;
+        this.C = C;
+        this.districts = districts;
+        neighbour = cells.neighbours();
+        connectors();
+    }
+
+    @Override
+    public void separate(double[] candidate, MipModel.Cuts cuts) throws Exception {
+        int[] district = new int[cells.count];
+        for (int i = 0; i < cells.count; i++) {
+            for (int b = 0; b < districts; b++) {
+                if (candidate[C[i][b]] > 0.5) {
+                    district[i] = b;
+                }
+            }
+        }
+
+        int[] component = new int[cells.count];
+        int componentCount = components(district, component);
+
+        // Cells grouped by component
+        int[] start = new int[componentCount + 1];
+        for (int i = 0; i < cells.count; i++) {
+            start[component[i] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] members = new int[cells.count];
+        int[] fill = Arrays.copyOf(start, componentCount);
+        for (int i = 0; i < cells.count; i++) {
+            members[fill[component[i]]++] = i;
+        }
+
+        // Largest component of each district
+        int[] largest = new int[districts];
+        Arrays.fill(largest, -1);
+        for (int c = 0; c < componentCount; c++) {
+            int b = district[members[start[c]]];
+            if (largest[b] < 0 || start[c + 1] - start[c] > start[largest[b] + 1] - start[largest[b]]) {
+                largest[b] = c;
+            }
+        }
+
+        int[] stamp = new int[cells.count];
+        int[] connectorStamp = new int[connectorStart.length - 1];
+        int[] boundary = new int[cells.count];
+        for (int c = 0; c < componentCount; c++) {
+            int i = members[start[c]];
+            int b = district[i];
+            if (largest[b] == c)
+                continue;
+            int j = members[start[largest[b]]];
+
+            // Neighbours of component c, also across connectors, none of them belongs to district b
+            int boundarySize = 0;
+            for (int p = start[c]; p < start[c + 1]; p++) {
+                for (int k = 4 * members[p]; k < 4 * members[p] + 4; k++) {
+                    int n = neighbour[k];
+                    if (n >= 0 && component[n] != c && stamp[n] != c + 1) {
+                        stamp[n] = c + 1;
+                        boundary[boundarySize++] = n;
+                    }
+                }
+                for (int q = cellStart[members[p]]; q < cellStart[members[p] + 1]; q++) {
+                    int g = cellConnector[q];
+                    if (connectorStamp[g] == c + 1)
+                        continue;
+                    connectorStamp[g] = c + 1;
+                    for (int t = connectorStart[g]; t < connectorStart[g + 1]; t++) {
+                        int n = connectorCell[t];
+                        if (component[n] != c && stamp[n] != c + 1) {
+                            stamp[n] = c + 1;
+                            boundary[boundarySize++] = n;
+                        }
+                    }
+                }
+            }
+
+            // Districts are interchangeable, so cells i and j are separated in every district
+            // C[i][e] + C[j][e] - sum of C[k][e] over the neighbours k of component c <= 1
+            for (int e = 0; e < districts; e++) {
+                LinearExpr cut = new LinearExpr(boundarySize + 2);
+                cut.addTerm(1, C[i][e]);
+                cut.addTerm(1, C[j][e]);
+                for (int k = 0; k < boundarySize; k++) {
+                    cut.addTerm(-1, C[boundary[k]][e]);
+                }
+                cuts.add(cut, MipModel.LESS_EQUAL, 1);
+                cutCount++;
+            }
+        }
+    }
+
+    /**
+     * Every used district of the districting forms one component
+     */
+    public boolean connected(int[] district) {
+        boolean[] used = new boolean[districts];
+        int usedCount = 0;
+        for (int i = 0; i < cells.count; i++) {
+            if (!used[district[i]]) {
+                used[district[i]] = true;
+                usedCount++;
+            }
+        }
+        return components(district, new int[cells.count]) == usedCount;
+    }
+
+    /**
+     * Label the components of the districting in component and return their number
+     */
+    private int components(int[] district, int[] component) {
+        Arrays.fill(component, -1);
+        int[] queue = new int[cells.count];
+        // Connectors already crossed by the current component
+        int[] crossed = new int[connectorStart.length - 1];
+        int count = 0;
+        for (int s = 0; s < cells.count; s++) {
+            if (component[s] >= 0)
+                continue;
+            // Breadth first search within the district of cell s
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            component[s] = count;
+            while (head < tail) {
+                int i = queue[head++];
+                for (int k = 4 * i; k < 4 * i + 4; k++) {
+                    int n = neighbour[k];
+                    if (n >= 0 && component[n] < 0 && district[n] == district[i]) {
+                        component[n] = count;
+                        queue[tail++] = n;
+                    }
+                }
+                for (int q = cellStart[i]; q < cellStart[i + 1]; q++) {
+                    int g = cellConnector[q];
+                    if (crossed[g] == count + 1)
+                        continue;
+                    crossed[g] = count + 1;
+                    for (int t = connectorStart[g]; t < connectorStart[g + 1]; t++) {
+                        int n = connectorCell[t];
+                        if (component[n] < 0 && district[n] == district[i]) {
+                            component[n] = count;
+                            queue[tail++] = n;
+                        }
+                    }
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Regions of uninhabited cells that border at least two populated cells and the cells around them.
+     * The regions are labelled on the full grid, which is only done for contiguous districts.
+     */
+    private void connectors() {
+        int width = cells.width;
+        int size = cells.width * cells.height;
+        int[] cellAt = new int[size];
+        Arrays.fill(cellAt, -1);
+        for (int i = 0; i < cells.count; i++) {
+            cellAt[cells.y[i] * width + cells.x[i]] = i;
+        }
+
+        // Label the uninhabited regions by breadth first search, the cells bordering them in order of discovery
+        int[] region = new int[size];
+        Arrays.fill(region, -1);
+        int[] queue = new int[size];
+        int[] stamp = new int[cells.count];
+        int[] bordering = new int[cells.count];
+        int[] regionCells = new int[16];
+        int[] regionStart = new int[16];
+        int regionCount = 0;
+        int searchCount = 0;
+        int pairCount = 0;
+        for (int s = 0; s < size; s++) {
+            if (cellAt[s] >= 0 || region[s] >= 0)
+                continue;
+            searchCount++;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            region[s] = regionCount;
+            int borderingCount = 0;
+            while (head < tail) {
+                int e = queue[head++];
+                int x = e % width;
+                int[] adjacent = {x > 0 ? e - 1 : -1, x + 1 < width ? e + 1 : -1, e - width, e + width};
+                for (int a : adjacent) {
+                    if (a < 0 || a >= size)
+                        continue;
+                    int i = cellAt[a];
+                    if (i >= 0) {
+                        if (stamp[i] != searchCount) {
+                            stamp[i] = searchCount;
+                            bordering[borderingCount++] = i;
+                        }
+                    } else if (region[a] < 0) {
+                        region[a] = regionCount;
+                        queue[tail++] = a;
+                    }
+                }
+            }
+            if (borderingCount < 2) {
+                // Region connects nothing, its label is reused
+                for (int k = 0; k < tail; k++) {
+                    region[queue[k]] = Integer.MAX_VALUE;
+                }
+                continue;
+            }
+            if (pairCount + borderingCount > regionCells.length) {
+                regionCells = Arrays.copyOf(regionCells, Math.max(2 * regionCells.length, pairCount + borderingCount));
+            }
+            if (regionCount + 2 > regionStart.length) {
+                regionStart = Arrays.copyOf(regionStart, 2 * regionStart.length);
+            }
+            System.arraycopy(bordering, 0, regionCells, pairCount, borderingCount);
+            pairCount += borderingCount;
+            regionCount++;
+            regionStart[regionCount] = pairCount;
+        }
+        connectorStart = Arrays.copyOf(regionStart, regionCount + 1);
+        connectorCell = Arrays.copyOf(regionCells, pairCount);
+
+        // Connectors by cell
+        cellStart = new int[cells.count + 1];
+        for (int t = 0; t < pairCount; t++) {
+            cellStart[connectorCell[t] + 1]++;
+        }
+        for (int i = 0; i < cells.count; i++) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        cellConnector = new int[pairCount];
+        int[] fill = Arrays.copyOf(cellStart, cells.count);
+        for (int g = 0; g < regionCount; g++) {
+            for (int t = connectorStart[g]; t < connectorStart[g + 1]; t++) {
+                cellConnector[fill[connectorCell[t]]++] = g;
+            }
+        }
+    }
+}
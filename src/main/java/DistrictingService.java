@@ -0,0 +1,254 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running districting daemon on a local HTTP port, so many small jobs share one JVM and
+ * its solver environments. A job is a request
+ * {@code /solve?democrats=dem.in&republicans=rep.in&size=135[&m=200000000][&optimize=republicans][&presolve=false]}
+ * and its response streams the metrics of the election as JSON lines: job state, phases,
+ * solver progress and the result of the objective.
+ * At most maxConcurrent jobs are solved at once, up to queueCapacity more wait. Further jobs are
+ * answered with 503 until a slot is free. Each worker thread keeps one solver environment for all
+ * of its jobs, since a gurobi environment must not be used by two threads at once.
+ * {@code /status} returns the number of running, queued and completed jobs.
+ */
+public class DistrictingService implements AutoCloseable {
+
+    /**
+     * Solver used for all jobs
+     */
+    public final SolverBackend solver;
+    /**
+     * Number of jobs solved at the same time
+     */
+    public final int maxConcurrent;
+    /**
+     * Number of jobs waiting for a worker before new jobs are rejected
+     */
+    public final int queueCapacity;
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    // Permits of the running and queued jobs
+    private final Semaphore slots;
+    private final int threadsPerSolve;
+    // Environment of each worker thread, all of them are closed with the service
+    private final ThreadLocal<SolverEnvironment> environment = new ThreadLocal<>();
+    private final List<SolverEnvironment> environments = new ArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+
+    /**
+     * Start the service on the loopback port, port 0 picks a free one
+     */
+    public DistrictingService(SolverBackend solver, int port, int maxConcurrent, int queueCapacity) throws IOException {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("At least one concurrent job is required");
+        if (queueCapacity < 0)
+            throw new IllegalArgumentException("Queue capacity must not be negative");
+        this.solver = solver;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = queueCapacity;
+        slots = new Semaphore(maxConcurrent + queueCapacity);
+        threadsPerSolve = Math.max(1, Runtime.getRuntime().availableProcessors() / maxConcurrent);
+        workers = Executors.newFixedThreadPool(maxConcurrent);
+
+        // Requests are only accepted and handed to the workers, one dispatcher thread suffices
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/solve", this::solve);
+        server.createContext("/status", this::status);
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: DistrictingService <gurobi|java> <port> [maxConcurrent] [queueCapacity]");
+            System.exit(1);
+        }
+        SolverBackend solver = args[0].equals("java") ? SolverBackend.JAVA : SolverBackend.GUROBI;
+        int maxConcurrent = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int queueCapacity = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        DistrictingService service = new DistrictingService(solver, Integer.parseInt(args[1]), maxConcurrent, queueCapacity);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                service.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }));
+        System.out.println("Listening on port " + service.port());
+    }
+
+    /**
+     * Port the service listens on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop accepting jobs, finish the accepted ones and close the solver environments.
+     * If the calling thread is interrupted while waiting, the environments are closed anyway
+     * and the interrupt flag is set again.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (environments) {
+            for (SolverEnvironment env : environments) {
+                env.close();
+            }
+            environments.clear();
+        }
+    }
+
+    private void solve(HttpExchange exchange) throws IOException {
+        Election election;
+        boolean optimizeDemocrats;
+        try {
+            Map<String, String> params = query(exchange.getRequestURI().getRawQuery());
+            election = election(params);
+            String optimize = params.getOrDefault("optimize", "democrats");
+            if (!optimize.equals("democrats") && !optimize.equals("republicans"))
+                throw new IllegalArgumentException("optimize must be democrats or republicans");
+            optimizeDemocrats = optimize.equals("democrats");
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage());
+            return;
+        }
+        if (!slots.tryAcquire()) {
+            // Backpressure, the client retries later
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "Queue is full");
+            return;
+        }
+
+        // Chunked response, the log streams the events of the job as they happen
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        PrintStream out = new PrintStream(exchange.getResponseBody(), true, "UTF-8");
+        MetricsLog log = new MetricsLog(out);
+        String source = election.FILE_DEMOCRATS;
+        log.job(source, "queued", null);
+        workers.execute(() -> {
+            running.incrementAndGet();
+            try {
+                log.job(source, "started", null);
+                election.environment = environment();
+                election.threads = threadsPerSolve;
+                election.metrics = log;
+                election.winCount(true, true, optimizeDemocrats);
+                log.job(source, "done", null);
+            } catch (Exception | AssertionError e) {
+                // Failed checks of the results end the job, not the worker
+                log.job(source, "failed", String.valueOf(e));
+            } finally {
+                running.decrementAndGet();
+                completed.incrementAndGet();
+                slots.release();
+                out.close();
+                exchange.close();
+            }
+        });
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        int runningJobs = running.get();
+        int queuedJobs = Math.max(0, maxConcurrent + queueCapacity - slots.availablePermits() - runningJobs);
+        respond(exchange, 200, "{\"running\":" + runningJobs + ",\"queued\":" + queuedJobs
+                + ",\"completed\":" + completed.get() + "}");
+    }
+
+    /**
+     * Election of the job parameters, the model is not exported and presolved unless presolve=false
+     */
+    private Election election(Map<String, String> params) {
+        String democrats = params.get("democrats");
+        if (democrats == null)
+            throw new IllegalArgumentException("democrats is required");
+        int size = integer(params, "size");
+        Election election = params.containsKey("m")
+                ? new Election(democrats, params.get("republicans"), size, integer(params, "m"))
+                : new Election(democrats, params.get("republicans"), size);
+        election.solver = solver;
+        election.export = ModelExport.OFF;
+        election.presolve = !"false".equals(params.get("presolve"));
+        return election;
+    }
+
+    /**
+     * Solver environment of the calling worker thread, created on its first job
+     */
+    private SolverEnvironment environment() throws Exception {
+        SolverEnvironment env = environment.get();
+        if (env == null) {
+            env = solver.newEnvironment();
+            environment.set(env);
+            synchronized (environments) {
+                environments.add(env);
+            }
+        }
+        return env;
+    }
+
+    private static int integer(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null)
+            throw new IllegalArgumentException(name + " is required");
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null)
+            return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                try {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,38 +1,130 @@
-import gurobi.*;
-
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Election {
 
     // Model params
     /**
-     * Testfile for democrats
+     * Testfile for democrats, or binary grid with the votes of both parties
      */
     public final String FILE_DEMOCRATS;
     /**
-     * Testfile for republicans
+     * Testfile for republicans, null if the democrat file is a binary grid with both parties
      */
     public final String FILE_REPUBLICANS;
     /**
-     * Number of voting districts
+     * Default number of voting districts
      */
     public static final int B = 10;
+    /**
+     * Number of voting districts
+     */
+    public int districts = B;
     /**
      * Minimum size of a district
      */
-    public static int DISTRICT_SIZE;
+    public final int DISTRICT_SIZE;
+    /**
+     * Constant used in if-else construct, 0 if computed from the votes
+     */
+    public final int M;
+    /**
+     * Linking of the win variables to the votes, GIVEN uses M
+     */
+    public BigM bigM = BigM.GIVEN;
+    /**
+     * Group cells with equal votes into one integer variable per vote class and district
+     */
+    public boolean aggregateCells = false;
+    /**
+     * Order district labels by margin of the optimized party to remove permutations of equal districts
+     */
+    public boolean breakSymmetry = false;
+    /**
+     * Districts have to be connected on the 4-neighbour grid of populated cells, enforced by lazily added cuts
+     */
+    public boolean contiguous = false;
+    /**
+     * Pass a greedy districting to the solver as MIP start
+     */
+    public boolean warmStart = false;
+    /**
+     * Districting passed to the solver as additional MIP start, e.g. the optimum of a related election
+     */
+    public int[] mipStart;
+    /**
+     * Upper bound on the wins of the party optimized by winCount, known from a less restricted
+     * election, -1 if none. It is added as row and tightens the relaxation.
+     */
+    public int winBound = -1;
+    /**
+     * Decide infeasible elections and elections whose greedy districting reaches the upper bound on the
+     * wins in winCount without model and solver, otherwise pass the bounds to the solver
+     */
+    public boolean presolve = true;
+    /**
+     * Solve both objectives of maxWinCounts in one gurobi multi-scenario optimization
+     */
+    public boolean multiScenario = false;
+    /**
+     * Solver used to optimize the model
+     */
+    public SolverBackend solver = SolverBackend.GUROBI;
     /**
-     * Constant used in if-else construct
+     * Solver environment shared with other elections, a new one is created per model if null
      */
-    public static int M;
+    public SolverEnvironment environment;
+    /**
+     * Number of solver threads, 0 lets the solver decide
+     */
+    public int threads = 0;
+    /**
+     * Phases, solver progress and results are written to this log instead of stdout if set
+     */
+    public MetricsLog metrics;
+    /**
+     * Export of the model by winCount, ASYNC writes on a background thread after the results are read
+     */
+    public ModelExport export = ModelExport.ASYNC;
+    /**
+     * Write exported and cached models gzip compressed
+     */
+    public boolean compressExport = false;
+    /**
+     * Directory of the model exported by winCount
+     */
+    public String exportDirectory = ".";
+    /**
+     * Directory of models reused by winCount for identical grid files and parameters, none if null
+     */
+    public String modelCache;
+    /**
+     * Results reused by winCount for identical grid files and parameters without building or solving
+     */
+    public ResultCache resultCache;
+    /**
+     * Add the variables and rows of the cell model in bulk from primitive arrays instead of term by term
+     */
+    public boolean bulkBuild = true;
+    /**
+     * Name variables and constraints of bulk built models even if the model is not exported
+     */
+    public boolean debugNames = false;
 
     // Results
     /**
-     * Gurobi status after execution
+     * Solver status after execution, same values as GRB.Status
      */
     public int status;
     /**
@@ -43,11 +135,77 @@ public class Election {
      * Republican district win count
      */
     public int repVictoryCount;
+    /**
+     * Seconds until the solver found its first feasible solution, -1 if none
+     */
+    public double firstSolutionTime = -1;
+    /**
+     * Seconds to read the grid and build the model
+     */
+    public double buildTime;
+    /**
+     * Seconds until the solver finished
+     */
+    public double solveTime;
+    /**
+     * Model of the last winCount was loaded from modelCache, parse and build were skipped
+     */
+    public boolean modelReused;
+    /**
+     * Results of the last winCount were taken from resultCache
+     */
+    public boolean resultReused;
+    /**
+     * Results of the last winCount were decided by presolve without model and solver
+     */
+    public boolean presolved;
+    /**
+     * Populated cells of the grid, the grid is not read again if they are set before the model is built.
+     * A result cache hit does not read the grid, readCells gives the coordinates of district then.
+     */
+    public CellIndex cells;
+    /**
+     * District of populated cell i, coordinates are given by cells
+     */
+    public int[] district;
+    /**
+     * Check of the districting against the model, null without an optimal solution or on a result cache hit
+     */
+    public SolutionValidator.Report validation;
 
-    // Attributes to read input files
-    BufferedReader inp;
-    private int inpPos = 0;
-    private String inpLine;
+    // Model shared by the objectives of one build, package visible for the benchmarks
+    MipModel model;
+    // VD[b] = win for democrats in district b
+    private int[] VD;
+    // VR[b] = win for republicans in district b
+    private int[] VR;
+    // Rows con_VD1/con_VD2 and con_VR1/con_VR2 linking the wins to the votes
+    private int[] VDRows;
+    private int[] VRRows;
+    // Rows con_S ordering the districts by margin if breakSymmetry, by democrat margin if symmetryDemocrats
+    private int[] SRows;
+    private boolean symmetryDemocrats;
+    // Coefficients {M1, M2} of the win rows of each party
+    private double[] demWinM;
+    private double[] repWinM;
+    // Win rows of the party are enforced
+    private boolean demWinsActive;
+    private boolean repWinsActive;
+    // C[i][b] = district of populated cell i
+    private int[][] C;
+    // N[k][b] = number of cells of vote class k in district b
+    private int[][] N;
+    // classOf[i] = vote class of populated cell i
+    private int[] classOf;
+    // Separation of disconnected districts if contiguous
+    private ContiguityCuts contiguityCuts;
+    // Models of both objectives of maxWinCounts are written, so the model is built with names
+    private boolean objectivesExported;
+    // Districting of the lower bound of presolve, MIP start of winCount
+    private int[] presolveStart;
+    // Background write of the last winCount and its failure
+    private Thread exportThread;
+    private volatile Exception exportFailure;
 
     public Election(String filenameDemocrats, String filenameRepublicans, int districtSize, int m) {
         // Set filenames
@@ -61,335 +219,1332 @@ public class Election {
         M = m;
     }
 
+    /**
+     * Election with the smallest valid M computed from the votes
+     */
+    public Election(String filenameDemocrats, String filenameRepublicans, int districtSize) {
+        this(filenameDemocrats, filenameRepublicans, districtSize, 0);
+        bigM = BigM.TIGHT;
+    }
+
+    /**
+     * Election on a binary grid written by {@link VoteGridFile}
+     */
+    public Election(String filenameGrid, int districtSize, int m) {
+        this(filenameGrid, null, districtSize, m);
+    }
+
     public static void main(String[] args) throws Exception {
         // Create election
-        Election demElection = new Election("dem_tc.in", "rep_tc.in", 135, 200000000);
+        Election election = new Election("dem_tc.in", "rep_tc.in", 135);
 
-        // Create model maximized for democrat wins
-        demElection.winCount(true, false, true);
+        // Maximize democrat wins and republican wins on one model
+        election.maxWinCounts();
+        System.out.println("Democrats: " + election.demVictoryCount + ", republicans: " + election.repVictoryCount);
+    }
 
-        // Create model maximize for democrat wins
-        Election repElection = new Election("dem_tc.in", "rep_tc.in", 135, 200000000);
+    public int winCount(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats)
+            throws Exception {
+        // Results of an identical input are reused without model and solver
+        String resultKey = resultCache != null ? ModelCache.key(inputFiles(),
+                "result," + modelParams(countDemocratWins, countRepublicanWins, optimizeDemocrats)) : null;
+        ResultCache.Result cached = resultKey != null ? resultCache.get(resultKey) : null;
+        resultReused = cached != null;
+        if (resultReused) {
+            // Grid is not read, cells keep their previous value
+            status = cached.status;
+            demVictoryCount = cached.demVictoryCount;
+            repVictoryCount = cached.repVictoryCount;
+            district = cached.district;
+            firstSolutionTime = cached.firstSolutionTime;
+            buildTime = cached.buildTime;
+            solveTime = cached.solveTime;
+            modelReused = false;
+            presolved = false;
+            validation = null;
+            return demVictoryCount;
+        }
+
+        // Outcomes provable from the votes skip model and solver, a model to export is built but not solved
+        presolved = false;
+        presolveStart = null;
+        int bound = winBound;
+        if (presolve) {
+            long start = System.currentTimeMillis();
+            if (cells == null) {
+                MetricsLog.Phase phase = startPhase("parse");
+                cells = readCells();
+                endPhase(phase);
+            }
+            MetricsLog.Phase phase = startPhase("presolve");
+            Presolve bounds = new Presolve(cells, districts, DISTRICT_SIZE, optimizeDemocrats, contiguous);
+            endPhase(phase);
+            // A given M below the vote margins restricts the districtings, only the cell count decides then
+            boolean exact = exactWinRows(countDemocratWins, countRepublicanWins);
+            if (exact ? bounds.decided() : !bounds.feasible) {
+                presolvedResults(bounds, countDemocratWins, countRepublicanWins, optimizeDemocrats);
+                List<File> files = exportFiles(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+                if (!files.isEmpty()) {
+                    // The model cache is not filled, the result cache returns decided results faster
+                    readAndBuild(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+                    writeAndDispose(files, null, null, null);
+                }
+                buildTime = (System.currentTimeMillis() - start) / 1000d;
+                cacheResult(resultKey);
+                return demVictoryCount;
+            }
+            if (exact) {
+                bound = bound >= 0 ? Math.min(bound, bounds.upper) : bounds.upper;
+            }
+            // Greedy start of the lower bound in its own slot
+            presolveStart = bounds.district;
+        }
 
-        // Create model maximized for republican wins
-        repElection.winCount(false, true, false);
+        // Model of an identical input is loaded from the cache instead of parsed and built
+        ModelCache cache = modelCache != null ? new ModelCache(modelCache) : null;
+        String cacheKey = cache != null ? ModelCache.key(inputFiles(),
+                modelParams(countDemocratWins, countRepublicanWins, optimizeDemocrats)) : null;
+        modelReused = cache != null && loadModel(cache, cacheKey);
+        if (!modelReused) {
+            readAndBuild(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+            if (bound >= 0 && bound < districts && (optimizeDemocrats ? VD : VR) != null) {
+                model.addConstr(winObjective(optimizeDemocrats), MipModel.LESS_EQUAL, bound, "con_bound");
+            }
+        }
+
+        // Optimize model
+        solveTime = optimizeWins(optimizeDemocrats);
+        presolveStart = null;
+
+        verify(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+        cacheResult(resultKey);
+
+        List<File> files = exportFiles(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+        byte[] layout = cache != null && !modelReused ? layout() : null;
+        if (layout != null) {
+            files.add(cache.gridFile(cacheKey));
+            files.add(cache.modelFile(cacheKey, compressExport));
+        }
+        writeAndDispose(files, cache, cacheKey, layout);
+
+        return demVictoryCount;
     }
 
-    public int winCount(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats)
+    /**
+     * Files the model is exported to, none in test cases with both flags true
+     */
+    private List<File> exportFiles(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats) {
+        List<File> files = new ArrayList<>();
+        if (countRepublicanWins != countDemocratWins && export != ModelExport.OFF) {
+            files.add(new File(exportDirectory, (optimizeDemocrats ? "democrats" : "republicans")
+                    + (compressExport ? ".mps.gz" : ".mps")));
+        }
+        return files;
+    }
+
+    /**
+     * Wait until the files of the last winCount are written, a failed background write is rethrown
+     */
+    public void awaitExport() throws Exception {
+        if (exportThread != null) {
+            exportThread.join();
+            exportThread = null;
+        }
+        Exception failure = exportFailure;
+        exportFailure = null;
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Write the model to the files, the binary grid to the .bin file and complete the cache entry
+     * with the layout, then dispose of model and solver resources. Runs on a background thread
+     * if export is ASYNC and the model does not share an environment with other models, since a
+     * gurobi environment must only be used by one thread at a time.
+     */
+    private void writeAndDispose(List<File> files, ModelCache cache, String cacheKey, byte[] layout)
+            throws Exception {
+        awaitExport();
+        MipModel written = model;
+        CellIndex writtenCells = cells;
+        Runnable write = () -> {
+            try {
+                try {
+                    if (!files.isEmpty()) {
+                        MetricsLog.Phase phase = startPhase("write");
+                        for (File file : files) {
+                            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+                            if (file.getName().endsWith(".bin")) {
+                                VoteGridFile.write(writtenCells, file);
+                            } else {
+                                written.write(file.getPath());
+                            }
+                        }
+                        if (layout != null) {
+                            cache.writeLayout(cacheKey, layout);
+                        }
+                        endPhase(phase);
+                    }
+                } finally {
+                    // Dispose of model and solver resources
+                    written.dispose();
+                }
+            } catch (Exception e) {
+                exportFailure = e;
+            }
+        };
+        if (export == ModelExport.ASYNC && environment == null && !files.isEmpty()) {
+            exportThread = new Thread(write, "model-export");
+            exportThread.start();
+        } else {
+            write.run();
+            awaitExport();
+        }
+    }
+
+    /**
+     * Grid files the model is built from
+     */
+    private List<File> inputFiles() {
+        List<File> files = new ArrayList<>();
+        files.add(getFileFromResources(FILE_DEMOCRATS));
+        if (FILE_REPUBLICANS != null) {
+            files.add(getFileFromResources(FILE_REPUBLICANS));
+        }
+        return files;
+    }
+
+    /**
+     * Parameters that change the built model, part of the cache key
+     */
+    private String modelParams(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats) {
+        return "districts=" + districts + ",size=" + DISTRICT_SIZE + ",m=" + M + ",bigM=" + bigM
+                + (winBound >= 0 ? ",winBound=" + winBound : "") + (presolve ? ",presolve" : "")
+                + ",aggregate=" + aggregateCells + ",symmetry=" + breakSymmetry + ",contiguous=" + contiguous
+                + ",count=" + countDemocratWins + "/" + countRepublicanWins + ",optimize=" + optimizeDemocrats
+                + ",solver=" + solver;
+    }
+
+    /**
+     * Load the model, the cells and the layout of a complete cache entry, false if there is none
+     */
+    private boolean loadModel(ModelCache cache, String cacheKey) throws Exception {
+        File modelFile = cache.find(cacheKey);
+        if (modelFile == null)
+            return false;
+        long start = System.currentTimeMillis();
+        MetricsLog.Phase phase = startPhase("load");
+        cells = VoteGridFile.read(cache.gridFile(cacheKey));
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                Files.readAllBytes(cache.layoutFile(cacheKey).toPath())))) {
+            readLayout(in);
+        }
+        model = environment != null ? environment.newModel() : solver.newModel();
+        model.read(modelFile.getPath());
+        if (threads > 0) {
+            model.setThreads(threads);
+        }
+        contiguityCuts = null;
+        if (contiguous) {
+            contiguityCuts = new ContiguityCuts(cells, C, districts);
+            model.setLazyConstraints(contiguityCuts);
+        }
+        endPhase(phase);
+        buildTime = (System.currentTimeMillis() - start) / 1000d;
+        return true;
+    }
+
+    /**
+     * Indices of the variables and rows of the built model, stored next to the cached model
+     */
+    private byte[] layout() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(symmetryDemocrats);
+            writeInts(out, VD);
+            writeInts(out, VR);
+            writeInts(out, VDRows);
+            writeInts(out, VRRows);
+            writeInts(out, SRows);
+            writeInts(out, classOf);
+            writeDoubles(out, demWinM);
+            writeDoubles(out, repWinM);
+            writeMatrix(out, C);
+            writeMatrix(out, N);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void readLayout(DataInputStream in) throws IOException {
+        symmetryDemocrats = in.readBoolean();
+        VD = readInts(in);
+        VR = readInts(in);
+        VDRows = readInts(in);
+        VRRows = readInts(in);
+        SRows = readInts(in);
+        classOf = readInts(in);
+        demWinM = readDoubles(in);
+        repWinM = readDoubles(in);
+        C = readMatrix(in);
+        N = readMatrix(in);
+        demWinsActive = VD != null;
+        repWinsActive = VR != null;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values != null ? values.length : -1);
+        for (int i = 0; values != null && i < values.length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values != null ? values.length : -1);
+        for (int i = 0; values != null && i < values.length; i++) {
+            out.writeDouble(values[i]);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    private static void writeMatrix(DataOutputStream out, int[][] values) throws IOException {
+        out.writeInt(values != null ? values.length : -1);
+        for (int i = 0; values != null && i < values.length; i++) {
+            writeInts(out, values[i]);
+        }
+    }
+
+    private static int[][] readMatrix(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        int[][] values = new int[length][];
+        for (int i = 0; i < length; i++) {
+            values[i] = readInts(in);
+        }
+        return values;
+    }
+
+    /**
+     * Maximal democrat wins and maximal republican wins of two independent optimizations.
+     * The grid is read and the model is built once. Between the two optimizations only the
+     * objective changes and the win rows of the other party are relaxed.
+     * demVictoryCount and repVictoryCount hold the two maxima, district the republican optimum.
+     * Unless export is OFF, the model of each objective is written to democrats.mps and republicans.mps
+     * like the models of winCount.
+     */
+    public int[] maxWinCounts() throws Exception {
+        objectivesExported = export != ModelExport.OFF;
+        try {
+            readAndBuild(true, true, true);
+        } finally {
+            objectivesExported = false;
+        }
+
+        int demStatus;
+        int maxDemVictoryCount;
+        if (multiScenario) {
+            // Win rows of both parties stay, they do not restrict the districting
+            if (warmStart) {
+                // One greedy start per objective
+                model.selectStart(0);
+                setWarmStart(true);
+                model.selectStart(1);
+                setWarmStart(false);
+            }
+
+            // Optimize model
+            MetricsLog.Phase phase = startPhase("optimize");
+            reportProgress("both");
+            long start = System.currentTimeMillis();
+            model.optimizeObjectives(new LinearExpr[]{winObjective(true), winObjective(false)}, MipModel.MAXIMIZE);
+            long stop = System.currentTimeMillis();
+            solveTime = (stop - start) / 1000d;
+            endPhase(phase);
+
+            model.selectObjective(0);
+            verify(true, true, true);
+            demStatus = status;
+            maxDemVictoryCount = demVictoryCount;
+
+            model.selectObjective(1);
+            verify(true, true, false);
+            writeObjective(true);
+            writeObjective(false);
+        } else {
+            // Democrat objective, republican win rows relaxed
+            setWinRowsActive(false, false);
+            solveTime = optimizeWins(true);
+            verify(true, false, true);
+            writeObjective(true);
+            demStatus = status;
+            maxDemVictoryCount = demVictoryCount;
+            double demSolveTime = solveTime;
+
+            // Republican objective, democrat win rows relaxed
+            setWinRowsActive(true, false);
+            setWinRowsActive(false, true);
+            solveTime = optimizeWins(false);
+            verify(false, true, false);
+            writeObjective(false);
+            solveTime += demSolveTime;
+        }
+        demVictoryCount = maxDemVictoryCount;
+        if (demStatus != MipModel.OPTIMAL) {
+            status = demStatus;
+        }
+
+        // Dispose of model and solver resources
+        model.dispose();
+
+        return new int[]{demVictoryCount, repVictoryCount};
+    }
+
+    /**
+     * Write the model with the objective of one party to its export file, none if export is OFF.
+     * The model stays in use, so the file is written on the calling thread.
+     */
+    private void writeObjective(boolean democrats) throws Exception {
+        if (export == ModelExport.OFF)
+            return;
+        MetricsLog.Phase phase = startPhase("write");
+        File file = exportFiles(democrats, !democrats, democrats).get(0);
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        model.setObjective(winObjective(democrats), MipModel.MAXIMIZE);
+        model.write(file.getPath());
+        endPhase(phase);
+    }
+
+    /**
+     * Store the results of winCount under resultKey, none if null
+     */
+    private void cacheResult(String resultKey) throws IOException {
+        if (resultKey != null && (status == MipModel.OPTIMAL || status == MipModel.INFEASIBLE)) {
+            // Results cut short by a limit are not final
+            ResultCache.Result result = new ResultCache.Result();
+            result.status = status;
+            result.demVictoryCount = demVictoryCount;
+            result.repVictoryCount = repVictoryCount;
+            result.district = district;
+            result.firstSolutionTime = firstSolutionTime;
+            result.buildTime = buildTime;
+            result.solveTime = solveTime;
+            resultCache.put(resultKey, result);
+        }
+    }
+
+    /**
+     * Set objective and MIP starts of one party and optimize, returns the seconds of the solver
+     */
+    double optimizeWins(boolean democrats) throws Exception {
+        return optimizeWins(democrats, null);
+    }
+
+    /**
+     * Optimize one party with previousStart as further MIP start, every start has its own slot
+     */
+    double optimizeWins(boolean democrats, int[] previousStart) throws Exception {
+        model.setObjective(winObjective(democrats), MipModel.MAXIMIZE);
+        int starts = 0;
+        if (warmStart) {
+            setWarmStart(democrats);
+            starts++;
+        }
+        for (int[] startDistrict : new int[][]{mipStart, presolveStart, previousStart}) {
+            if (startDistrict != null) {
+                // Given, presolve and previous districtings as further starts
+                model.selectStart(starts++);
+                setStart(startDistrict);
+            }
+        }
+        model.selectStart(0);
+        MetricsLog.Phase phase = startPhase("optimize");
+        reportProgress(democrats ? "democrats" : "republicans");
+        long start = System.currentTimeMillis();
+        model.optimize();
+        long stop = System.currentTimeMillis();
+        endPhase(phase);
+        return (stop - start) / 1000d;
+    }
+
+    /**
+     * Read the grid and build the model, both phases are timed
+     */
+    void readAndBuild(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats)
+            throws Exception {
+        long start = System.currentTimeMillis();
+        if (cells == null) {
+            MetricsLog.Phase phase = startPhase("parse");
+            cells = readCells();
+            endPhase(phase);
+        }
+
+        MetricsLog.Phase phase = startPhase("build");
+        buildModel(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+        endPhase(phase);
+        buildTime = (System.currentTimeMillis() - start) / 1000d;
+    }
+
+    /**
+     * Read and check the results of the optimized objective and report them
+     */
+    void verify(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats)
             throws Exception {
-        // Read files
-        // Load democrat votes
-        loadDemocratFile();
-        int width = Integer.parseInt(next());
-        int height = Integer.parseInt(next());
-        // d[y][x] = Number of democrats votes of cell with coordinates (x,y)
-        int[][] d = getDemocratVotes(width, height);
-
-        // Read republican votes
-        loadRepublicanFile(width, height);
-        // r[y][x] = Number of republican votes of cell with coordinates (x,y)
-        int[][] r = getRepublicanVotes(width, height);
-
-        // Generate GUROBI model
-        GRBEnv env = new GRBEnv();
-        GRBModel model = new GRBModel(env);
+        MetricsLog.Phase phase = startPhase("verify");
+        int maxDiff = readResults(countDemocratWins, countRepublicanWins, optimizeDemocrats);
+        endPhase(phase);
+        report(optimizeDemocrats, maxDiff);
+    }
+
+    /**
+     * Results of the districting of presolve, the greedy districting is optimal if the election is feasible
+     */
+    private void presolvedResults(Presolve bounds, boolean countDemocratWins, boolean countRepublicanWins,
+                                  boolean optimizeDemocrats) {
+        presolved = true;
+        modelReused = false;
+        solveTime = 0;
+        demVictoryCount = 0;
+        repVictoryCount = 0;
+        district = null;
+        validation = null;
+        int maxDiff = Integer.MIN_VALUE;
+        if (!bounds.feasible) {
+            status = MipModel.INFEASIBLE;
+            firstSolutionTime = -1;
+        } else {
+            status = MipModel.OPTIMAL;
+            firstSolutionTime = 0;
+            district = bounds.district;
+            int[] assignments = new int[cells.count];
+            Arrays.fill(assignments, 1);
+            // Wins follow from the districting, there are no win flags to check
+            validation = SolutionValidator.validate(cells, districts, DISTRICT_SIZE, district, assignments, null, null);
+            demVictoryCount = countDemocratWins ? validation.demWins : 0;
+            repVictoryCount = countRepublicanWins ? validation.repWins : 0;
+            maxDiff = (int) Math.min(Integer.MAX_VALUE, validation.maxDiff);
+        }
+        report(optimizeDemocrats, maxDiff);
+    }
+
+    /**
+     * Result of the objective to the metrics log or stdout
+     */
+    private void report(boolean optimizeDemocrats, int maxDiff) {
+        if (metrics != null) {
+            metrics.result(FILE_DEMOCRATS, optimizeDemocrats ? "democrats" : "republicans", status,
+                    demVictoryCount, repVictoryCount, maxDiff, solveTime, firstSolutionTime);
+        } else {
+            printInfo(maxDiff);
+        }
+    }
+
+    /**
+     * Forward solver progress of the objective to the metrics log
+     */
+    private void reportProgress(String objective) throws Exception {
+        if (metrics != null) {
+            model.setProgressListener((time, incumbent, bound, nodes) ->
+                    metrics.progress(FILE_DEMOCRATS, objective, time, incumbent, bound, nodes));
+        }
+    }
+
+    private MetricsLog.Phase startPhase(String phase) {
+        return metrics != null ? metrics.startPhase(FILE_DEMOCRATS, phase) : null;
+    }
+
+    private void endPhase(MetricsLog.Phase phase) {
+        if (phase != null) {
+            phase.end();
+        }
+    }
+
+    /**
+     * Enforce or relax the win rows of a party, the wins of a relaxed party are fixed to 0.
+     * Indicator constraints stay enforced, they do not restrict the districting.
+     */
+    private void setWinRowsActive(boolean democrats, boolean active) throws Exception {
+        int[] V = democrats ? VD : VR;
+        int[] rows = democrats ? VDRows : VRRows;
+        double[] winM = democrats ? demWinM : repWinM;
+        for (int b = 0; b < districts && bigM != BigM.INDICATOR; b++) {
+            model.setRhs(rows[2 * b], active ? 0 : Double.NEGATIVE_INFINITY);
+            model.setRhs(rows[2 * b + 1], active ? winM[1] - 1 : Double.POSITIVE_INFINITY);
+            model.setBounds(V[b], 0.0, active ? 1.0 : 0.0);
+        }
+        if (democrats) {
+            demWinsActive = active;
+        } else {
+            repWinsActive = active;
+        }
+    }
+
+    /**
+     * Read the populated cells of the grid files
+     */
+    CellIndex readCells() throws IOException {
+        File democratFile = getFileFromResources(FILE_DEMOCRATS);
+        if (VoteGridFile.isBinary(democratFile)) {
+            // Binary grid holds the votes of both parties
+            return VoteGridFile.read(democratFile);
+        }
+        // Load democrat and republican votes
+        return VoteGridReader.readCells(democratFile, getFileFromResources(FILE_REPUBLICANS));
+    }
+
+    /**
+     * Build variables and constraints over the cells, the objective is set by the caller
+     */
+    void buildModel(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats)
+            throws Exception {
+        int[] d = cells.d;
+        int[] r = cells.r;
+
+        if (optimizeDemocrats ? !countDemocratWins : !countRepublicanWins) {
+            // Illegal combination of var to set and var to optimize
+            throw new IllegalStateException();
+        }
+
+        // Generate model
+        model = environment != null ? environment.newModel() : solver.newModel();
+        if (threads > 0) {
+            model.setThreads(threads);
+        }
         String st = "";
+        // Names are only needed to read the exported model
+        boolean named = !bulkBuild || debugNames || objectivesExported
+                || (countDemocratWins != countRepublicanWins && export != ModelExport.OFF);
 
         // Build model
-        // VD[b] = win for democrats in district b
-        GRBVar[] VD = new GRBVar[B];
-        // VR[b] = win for republicans in district b
-        GRBVar[] VR = new GRBVar[B];
+        VD = countDemocratWins ? new int[districts] : null;
+        VR = countRepublicanWins ? new int[districts] : null;
+        VDRows = countDemocratWins ? new int[2 * districts] : null;
+        VRRows = countRepublicanWins ? new int[2 * districts] : null;
+        demWinsActive = countDemocratWins;
+        repWinsActive = countRepublicanWins;
         // D[b] = Number of democrat votes of cell with district b
-        GRBLinExpr[] D = new GRBLinExpr[B];
+        LinearExpr[] D = new LinearExpr[districts];
         // R[b] = Number of republican votes of cell with district b
-        GRBLinExpr[] R = new GRBLinExpr[B];
+        LinearExpr[] R = new LinearExpr[districts];
         // Constraint (B): Each label has to be used at least districtSize times
-        GRBLinExpr[] districtSizeExpr = new GRBLinExpr[B];
-        for (int b = 0; b < B; b++) {
+        LinearExpr[] districtSizeExpr = new LinearExpr[districts];
+        for (int b = 0; b < districts; b++) {
             if (countDemocratWins) {
                 // Add variable VD
-                st = "VD_" + String.valueOf(b);
-                VD[b] = model.addVar(0.0, 1.0, 0.0, GRB.BINARY, st);
+                st = named ? "VD_" + String.valueOf(b) : null;
+                VD[b] = model.addVar(0.0, 1.0, 0.0, MipModel.BINARY, st);
             }
             if (countRepublicanWins) {
                 // Add variable VR
-                st = "VR_" + String.valueOf(b);
-                VR[b] = model.addVar(0.0, 1.0, 0.0, GRB.BINARY, st);
+                st = named ? "VR_" + String.valueOf(b) : null;
+                VR[b] = model.addVar(0.0, 1.0, 0.0, MipModel.BINARY, st);
             }
 
             // Initialize arrays
-            D[b] = new GRBLinExpr();
-            R[b] = new GRBLinExpr();
-            districtSizeExpr[b] = new GRBLinExpr();
+            D[b] = new LinearExpr();
+            R[b] = new LinearExpr();
+            districtSizeExpr[b] = new LinearExpr();
         }
 
-        // C[y][x][b] = district of cell with coordinates (x,y)
-        GRBVar[][][] C = new GRBVar[height][width][B];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-
-                // Ignore inhabited area
-                if (r[y][x] + d[y][x] == 0)
-                    continue;
+        SRows = breakSymmetry ? new int[districts - 1] : null;
+        symmetryDemocrats = optimizeDemocrats;
+        C = null;
+        N = null;
+        classOf = null;
+        contiguityCuts = null;
+        if (contiguous && aggregateCells) {
+            // Vote classes have no position on the grid
+            throw new IllegalStateException();
+        }
+        demWinM = winRowM(true);
+        repWinM = winRowM(false);
+        if (!aggregateCells && bulkBuild) {
+            buildCellModel(countDemocratWins, countRepublicanWins, named);
+            return;
+        }
+        if (aggregateCells) {
+            // Cells with equal votes are interchangeable, since districts need not be contiguous
+            classOf = new int[cells.count];
+            Map<Long, Integer> classIndex = new HashMap<>();
+            int[] classSize = new int[cells.count];
+            int[] classD = new int[cells.count];
+            int[] classR = new int[cells.count];
+            for (int i = 0; i < cells.count; i++) {
+                long key = ((long) d[i] << 32) | r[i];
+                Integer k = classIndex.get(key);
+                if (k == null) {
+                    k = classIndex.size();
+                    classIndex.put(key, k);
+                    classD[k] = d[i];
+                    classR[k] = r[i];
+                }
+                classSize[k]++;
+                classOf[i] = k;
+            }
 
-                for (int b = 0; b < B; b++) {
-                    // Add variable C
-                    st = "C_" + String.valueOf(x) + "_" + String.valueOf(y) + "_" + String.valueOf(b);
-                    C[y][x][b] = model.addVar(0.0, 1.0, 0.0, GRB.BINARY, st);
+            N = new int[classIndex.size()][districts];
+            for (int k = 0; k < N.length; k++) {
+                for (int b = 0; b < districts; b++) {
+                    // Add variable N
+                    st = "N_" + String.valueOf(k) + "_" + String.valueOf(b);
+                    N[k][b] = model.addVar(0.0, classSize[k], 0.0, MipModel.INTEGER, st);
                 }
 
-            }
-        }
+                // Add constraint (A): Each cell of class k has to belong to exactly 1 district
+                LinearExpr classCountExpr = new LinearExpr();
+                classCountExpr.addTerms(null, N[k]);
+                st = "con_A_" + String.valueOf(k);
+                model.addConstr(classCountExpr, MipModel.EQUAL, classSize[k], st);
 
-        // Add constraints
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
+                for (int b = 0; b < districts; b++) {
+                    // Set D
+                    D[b].addTerm(classD[k], N[k][b]);
 
-                // Ignore inhabited area
-                if (r[y][x] + d[y][x] == 0)
-                    continue;
+                    // Set R
+                    R[b].addTerm(classR[k], N[k][b]);
 
+                    // Constraint (B): Each label has to be used at least districtSize times
+                    districtSizeExpr[b].addTerm(1, N[k][b]);
+                }
+            }
+        } else {
+            C = new int[cells.count][districts];
+            for (int i = 0; i < cells.count; i++) {
+                for (int b = 0; b < districts; b++) {
+                    // Add variable C
+                    st = "C_" + String.valueOf(cells.x[i]) + "_" + String.valueOf(cells.y[i]) + "_" + String.valueOf(b);
+                    C[i][b] = model.addVar(0.0, 1.0, 0.0, MipModel.BINARY, st);
+                }
+            }
+
+            // Add constraints
+            for (int i = 0; i < cells.count; i++) {
                 // Add constraint (A): Each cell with coordinates (x,y) has to belong to exactly 1 district
-                GRBLinExpr labelCountExpr = new GRBLinExpr();
-                labelCountExpr.addTerms(null, C[y][x]);
-                st = "con_A_" + String.valueOf(x) + "_" + String.valueOf(y);
-                model.addConstr(labelCountExpr, GRB.EQUAL, 1.0, st);
+                LinearExpr labelCountExpr = new LinearExpr();
+                labelCountExpr.addTerms(null, C[i]);
+                st = "con_A_" + String.valueOf(cells.x[i]) + "_" + String.valueOf(cells.y[i]);
+                model.addConstr(labelCountExpr, MipModel.EQUAL, 1.0, st);
 
-                for (int b = 0; b < B; b++) {
+                for (int b = 0; b < districts; b++) {
                     // Set D
-                    D[b].addTerm(d[y][x], C[y][x][b]);
+                    D[b].addTerm(d[i], C[i][b]);
 
                     // Set R
-                    R[b].addTerm(r[y][x], C[y][x][b]);
+                    R[b].addTerm(r[i], C[i][b]);
 
                     // Constraint (B): Each label has to be used at least districtSize times
-                    districtSizeExpr[b].addTerm(1, C[y][x][b]);
+                    districtSizeExpr[b].addTerm(1, C[i][b]);
                 }
             }
+
+            if (contiguous) {
+                // Connectivity is checked on the candidate solutions, cuts are added only for split districts
+                contiguityCuts = new ContiguityCuts(cells, C, districts);
+                model.setLazyConstraints(contiguityCuts);
+            }
         }
 
         // Parts of greater than comparison
-        GRBLinExpr middlePart;
-        GRBLinExpr rightPart;
-        // Objective: Sum victories VD/VR
-        GRBLinExpr sumV = new GRBLinExpr();
-        for (int b = 0; b < B; b++) {
+        LinearExpr middlePart;
+        for (int b = 0; b < districts; b++) {
             // Add constraint (B): Each label has to be used at least districtSize times
             st = "con_B_" + String.valueOf(b);
-            model.addConstr(districtSizeExpr[b], GRB.GREATER_EQUAL, DISTRICT_SIZE, st);
+            model.addConstr(districtSizeExpr[b], MipModel.GREATER_EQUAL, DISTRICT_SIZE, st);
 
             if (countDemocratWins) {
                 // Set VD[b]
                 // D[b] > R[b]
-                middlePart = new GRBLinExpr();
+                middlePart = new LinearExpr();
                 middlePart.add(R[b]);
                 middlePart.multAdd(-1, D[b]);
-                middlePart.addTerm(M, VD[b]);
-                st = "con_VD1_" + String.valueOf(b);
-                model.addConstr(0, GRB.LESS_EQUAL, middlePart, st);
-
-                rightPart = new GRBLinExpr();
-                rightPart.addConstant(M);
-                rightPart.addConstant(-1);
-                st = "con_VD2_" + String.valueOf(b);
-                model.addConstr(middlePart, GRB.LESS_EQUAL, rightPart, st);
+                addWinRows(middlePart, VD[b], demWinM, "VD", b, VDRows);
             }
 
             if (countRepublicanWins) {
                 // Set VR[b]
                 // R[b] > D[b]
-                middlePart = new GRBLinExpr();
+                middlePart = new LinearExpr();
                 middlePart.add(D[b]);
                 middlePart.multAdd(-1, R[b]);
-                middlePart.addTerm(M, VR[b]);
-                st = "con_VR1_" + String.valueOf(b);
-                model.addConstr(0, GRB.LESS_EQUAL, middlePart, st);
-
-                rightPart = new GRBLinExpr();
-                rightPart.addConstant(M);
-                rightPart.addConstant(-1);
-                st = "con_VR2_" + String.valueOf(b);
-                model.addConstr(middlePart, GRB.LESS_EQUAL, rightPart, st);
-            }
-
-            // Objective: Sum victories VD/VR
-            if (optimizeDemocrats && countDemocratWins) {
-                sumV.addTerm(1, VD[b]);
-            } else if (!optimizeDemocrats && countRepublicanWins) {
-                sumV.addTerm(1, VR[b]);
-            } else {
-                // Illegal combination of var to set and var to optimize
-                throw new IllegalStateException();
+                addWinRows(middlePart, VR[b], repWinM, "VR", b, VRRows);
             }
         }
 
-        // Objective
-        model.setObjective(sumV, GRB.MAXIMIZE);
+        if (breakSymmetry) {
+            for (int b = 0; b + 1 < districts; b++) {
+                // Labels are interchangeable, so sort them by margin of the optimized party
+                // Any fixed order is valid, so the rows also serve the objective of the other party
+                // margin[b] >= margin[b+1]
+                LinearExpr marginOrderExpr = new LinearExpr();
+                marginOrderExpr.add(optimizeDemocrats ? D[b] : R[b]);
+                marginOrderExpr.multAdd(-1, optimizeDemocrats ? R[b] : D[b]);
+                marginOrderExpr.multAdd(-1, optimizeDemocrats ? D[b + 1] : R[b + 1]);
+                marginOrderExpr.add(optimizeDemocrats ? R[b + 1] : D[b + 1]);
+                st = "con_S_" + String.valueOf(b);
+                SRows[b] = model.addConstr(marginOrderExpr, MipModel.GREATER_EQUAL, 0, st);
 
-        // Optimize model
-        long start = System.currentTimeMillis();
-        model.optimize();
-        long stop = System.currentTimeMillis();
+                // Wins of the optimized party come first, wins of the other party last
+                if (countDemocratWins) {
+                    LinearExpr winOrderExpr = new LinearExpr();
+                    winOrderExpr.addTerm(optimizeDemocrats ? 1 : -1, VD[b]);
+                    winOrderExpr.addTerm(optimizeDemocrats ? -1 : 1, VD[b + 1]);
+                    st = "con_SVD_" + String.valueOf(b);
+                    model.addConstr(winOrderExpr, MipModel.GREATER_EQUAL, 0, st);
+                }
+                if (countRepublicanWins) {
+                    LinearExpr winOrderExpr = new LinearExpr();
+                    winOrderExpr.addTerm(optimizeDemocrats ? -1 : 1, VR[b]);
+                    winOrderExpr.addTerm(optimizeDemocrats ? 1 : -1, VR[b + 1]);
+                    st = "con_SVR_" + String.valueOf(b);
+                    model.addConstr(winOrderExpr, MipModel.GREATER_EQUAL, 0, st);
+                }
+            }
+        }
+    }
 
-        // Write model to file
-        if (countRepublicanWins != countDemocratWins) {
-            // Only in test cases both flags true
-            if (optimizeDemocrats) {
-                model.write("democrats.mps");
-            } else {
-                model.write("republicans.mps");
+    /**
+     * Variables and rows of the cell model added in bulk, in the same order as the term by term
+     * build. Each row is filled from the vote arrays in variable order, names only if named.
+     */
+    private void buildCellModel(boolean countDemocratWins, boolean countRepublicanWins, boolean named)
+            throws Exception {
+        int n = cells.count;
+        int[] d = cells.d;
+        int[] r = cells.r;
+
+        // Add variables C, cell i and district b is variable first + districts * i + b
+        String[] names = null;
+        if (named) {
+            names = new String[n * districts];
+            for (int i = 0; i < n; i++) {
+                for (int b = 0; b < districts; b++) {
+                    names[districts * i + b] = "C_" + cells.x[i] + "_" + cells.y[i] + "_" + b;
+                }
+            }
+        }
+        int first = model.addVars(n * districts, 0.0, 1.0, MipModel.BINARY, names);
+        C = new int[n][districts];
+        for (int i = 0; i < n; i++) {
+            for (int b = 0; b < districts; b++) {
+                C[i][b] = first + districts * i + b;
             }
         }
 
-        // Get results
-        status = model.get(GRB.IntAttr.Status);
-        int maxDiff = Integer.MIN_VALUE;
-        if (status == GRB.Status.OPTIMAL) {
-            for (int b = 0; b < B; b++) {
+        // Add constraints (A): Each cell with coordinates (x,y) has to belong to exactly 1 district
+        Rows rows = new Rows(n, n * districts, named);
+        for (int i = 0; i < n; i++) {
+            for (int b = 0; b < districts; b++) {
+                rows.term(C[i][b], 1);
+            }
+            rows.row(MipModel.EQUAL, 1, named ? "con_A_" + cells.x[i] + "_" + cells.y[i] : null);
+        }
+        rows.addTo(model);
 
-                if (countDemocratWins) {
-                    double demVictory = VD[b].get(GRB.DoubleAttr.X);
-                if (demVictory > 0) {
-                    demVictoryCount++;
+        if (contiguous) {
+            // Connectivity is checked on the candidate solutions, cuts are added only for split districts
+            contiguityCuts = new ContiguityCuts(cells, C, districts);
+            model.setLazyConstraints(contiguityCuts);
+        }
+
+        // Democrat lead of each cell, the loss margin of the democrats is its negation
+        long[] lead = new long[n];
+        for (int i = 0; i < n; i++) {
+            lead[i] = (long) d[i] - r[i];
+        }
+        boolean indicator = bigM == BigM.INDICATOR;
+        rows = new Rows(5 * districts, districts * (5 * n + 4), named);
+        for (int b = 0; b < districts; b++) {
+            // Add constraint (B): Each label has to be used at least districtSize times
+            for (int i = 0; i < n; i++) {
+                rows.term(C[i][b], 1);
+            }
+            rows.row(MipModel.GREATER_EQUAL, DISTRICT_SIZE, named ? "con_B_" + b : null);
+
+            // Set VD[b]: D[b] > R[b], set VR[b]: R[b] > D[b]
+            for (int party = 0; party < 2; party++) {
+                boolean democrats = party == 0;
+                int[] V = democrats ? VD : VR;
+                if (V == null)
+                    continue;
+                String name = democrats ? "VD" : "VR";
+                long sign = democrats ? -1 : 1;
+                if (indicator) {
+                    LinearExpr lossMargin = new LinearExpr(n);
+                    for (int i = 0; i < n; i++) {
+                        lossMargin.addTerm(sign * lead[i], C[i][b]);
+                    }
+                    addWinRows(lossMargin, V[b], null, name, b, null);
+                    continue;
                 }
+                double[] winM = democrats ? demWinM : repWinM;
+                int[] winRows = democrats ? VDRows : VRRows;
+
+                // lossMargin + M1 * V >= 0, the win variables precede the cells
+                rows.term(V[b], winM[0]);
+                for (int i = 0; i < n; i++) {
+                    rows.term(C[i][b], sign * lead[i]);
                 }
+                winRows[2 * b] = rows.row(MipModel.GREATER_EQUAL, 0, named ? "con_" + name + "1_" + b : null);
 
-                if (countRepublicanWins) {
-                    double repVictory = VR[b].get(GRB.DoubleAttr.X);
-                    if (repVictory > 0) {
-                        repVictoryCount++;
-                    }
+                // lossMargin + M2 * V <= M2 - 1
+                rows.term(V[b], winM[1]);
+                for (int i = 0; i < n; i++) {
+                    rows.term(C[i][b], sign * lead[i]);
                 }
+                winRows[2 * b + 1] = rows.row(MipModel.LESS_EQUAL, winM[1] - 1, named ? "con_" + name + "2_" + b : null);
+            }
+        }
+        int firstRow = rows.addTo(model);
+        for (int k = 0; k < 2 * districts && !indicator; k++) {
+            if (VD != null) {
+                VDRows[k] += firstRow;
             }
+            if (VR != null) {
+                VRRows[k] += firstRow;
+            }
+        }
 
-            // Check model
-            int[] labelCount = new int[B];
-            int diff = 0;
-            int[] democratsPerDistrict = new int[B];
-            int[] republicansPerDistrict = new int[B];
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
+        if (breakSymmetry) {
+            rows = new Rows(3 * (districts - 1), (districts - 1) * (2 * n + 4), named);
+            long sign = symmetryDemocrats ? 1 : -1;
+            for (int b = 0; b + 1 < districts; b++) {
+                // Labels are interchangeable, so sort them by margin of the optimized party
+                // margin[b] >= margin[b+1]
+                for (int i = 0; i < n; i++) {
+                    rows.term(C[i][b], sign * lead[i]);
+                    rows.term(C[i][b + 1], -sign * lead[i]);
+                }
+                SRows[b] = rows.row(MipModel.GREATER_EQUAL, 0, named ? "con_S_" + b : null);
 
-                    // Ignore inhabited area
-                    if (r[y][x] + d[y][x] == 0)
-                        continue;
+                // Wins of the optimized party come first, wins of the other party last
+                if (VD != null) {
+                    rows.term(VD[b], sign);
+                    rows.term(VD[b + 1], -sign);
+                    rows.row(MipModel.GREATER_EQUAL, 0, named ? "con_SVD_" + b : null);
+                }
+                if (VR != null) {
+                    rows.term(VR[b], -sign);
+                    rows.term(VR[b + 1], sign);
+                    rows.row(MipModel.GREATER_EQUAL, 0, named ? "con_SVR_" + b : null);
+                }
+            }
+            firstRow = rows.addTo(model);
+            for (int b = 0; b + 1 < districts; b++) {
+                SRows[b] += firstRow;
+            }
+        }
+    }
 
-                    int districtCounter = 0;
-                    for (int b = 0; b < B; b++) {
-                        // Number of districts a cell is assigned
-                        districtCounter += C[y][x][b].get(GRB.DoubleAttr.X);
+    /**
+     * Constraints collected as compressed rows and added to the model in one call
+     */
+    private static class Rows {
+        int count;
+        // Number of terms of all rows
+        int size;
+        int[] start;
+        int[] vars;
+        double[] coeffs;
+        char[] sense;
+        double[] rhs;
+        String[] names;
 
-                        // Number of cells that use label b
-                        if (C[y][x][b].get(GRB.DoubleAttr.X) == 1) {
-                            labelCount[b] += 1;
-                        }
+        Rows(int rowCapacity, int termCapacity, boolean named) {
+            start = new int[rowCapacity + 1];
+            vars = new int[Math.max(1, termCapacity)];
+            coeffs = new double[Math.max(1, termCapacity)];
+            sense = new char[Math.max(1, rowCapacity)];
+            rhs = new double[Math.max(1, rowCapacity)];
+            names = named ? new String[Math.max(1, rowCapacity)] : null;
+        }
 
-                        // Get number of democrat votes per district
-                        democratsPerDistrict[b] += d[y][x] * C[y][x][b].get(GRB.DoubleAttr.X);
-                        // Get number of republican votes per district
-                        republicansPerDistrict[b] += r[y][x] * C[y][x][b].get(GRB.DoubleAttr.X);
+        void term(int var, double coeff) {
+            if (size == vars.length) {
+                vars = Arrays.copyOf(vars, 2 * size);
+                coeffs = Arrays.copyOf(coeffs, 2 * size);
+            }
+            vars[size] = var;
+            coeffs[size] = coeff;
+            size++;
+        }
 
-                        // Get max difference
-                        if (optimizeDemocrats){
-                            diff = Math.abs(republicansPerDistrict[b]- democratsPerDistrict[b]);
-                        } else {
-                            diff = Math.abs(democratsPerDistrict[b] - republicansPerDistrict[b]);
-                        }
-                        maxDiff = diff > maxDiff ? diff : maxDiff;
-                    }
+        /**
+         * Close the row of the terms added since the last row, returns its position in the batch
+         */
+        int row(char sense, double rhs, String name) {
+            if (count == this.sense.length) {
+                start = Arrays.copyOf(start, 2 * count + 1);
+                this.sense = Arrays.copyOf(this.sense, 2 * count);
+                this.rhs = Arrays.copyOf(this.rhs, 2 * count);
+                names = names != null ? Arrays.copyOf(names, 2 * count) : null;
+            }
+            this.sense[count] = sense;
+            this.rhs[count] = rhs;
+            if (names != null) {
+                names[count] = name;
+            }
+            count++;
+            start[count] = size;
+            return count - 1;
+        }
 
-                    // Constraint (A): Each cell with coordinates (x,y) has to belong to exactly 1 district
-                    assert (districtCounter == 1);
+        /**
+         * Add the rows to model, returns the index of the first one
+         */
+        int addTo(MipModel model) throws Exception {
+            return model.addConstrs(count, start, vars, coeffs, sense, rhs, names);
+        }
+    }
 
+    /**
+     * Link win variable V to lossMargin = votes of the other party - votes of the party:
+     * V = 1 if lossMargin <= -1, V = 0 if lossMargin >= 0
+     */
+    private void addWinRows(LinearExpr lossMargin, int V, double[] winM, String name, int b, int[] rows)
+            throws Exception {
+        if (bigM == BigM.INDICATOR) {
+            model.addIndicator(V, 1, lossMargin, MipModel.LESS_EQUAL, -1, "con_" + name + "1_" + b);
+            model.addIndicator(V, 0, lossMargin, MipModel.GREATER_EQUAL, 0, "con_" + name + "2_" + b);
+            return;
+        }
 
-                }
-            }
+        // lossMargin + M1 * V >= 0
+        LinearExpr winExpr = new LinearExpr(lossMargin.size + 1);
+        winExpr.add(lossMargin);
+        winExpr.addTerm(winM[0], V);
+        rows[2 * b] = model.addConstr(winExpr, MipModel.GREATER_EQUAL, 0, "con_" + name + "1_" + b);
 
-            for (int b = 0; b < B; b++) {
-                //System.out.println("Label " + b + ", " + labelCount[b]);
-                // Constraint (B): Each label has to be used at least districtSize times
-                assert (labelCount[b] >= DISTRICT_SIZE);
+        // lossMargin + M2 * V <= M2 - 1
+        if (winM[1] != winM[0]) {
+            winExpr = new LinearExpr(lossMargin.size + 1);
+            winExpr.add(lossMargin);
+            winExpr.addTerm(winM[1], V);
+        }
+        rows[2 * b + 1] = model.addConstr(winExpr, MipModel.LESS_EQUAL, winM[1] - 1, "con_" + name + "2_" + b);
+    }
 
-                // Check if detected win corresponds with expected win
-                if (democratsPerDistrict[b] > republicansPerDistrict[b]) {
-                    if (countDemocratWins) assert (VD[b].get(GRB.DoubleAttr.X) == 1);
-                    if (countRepublicanWins) assert (VR[b].get(GRB.DoubleAttr.X) == 0);
-                }
-                if (democratsPerDistrict[b] < republicansPerDistrict[b]) {
-                    if (countDemocratWins) assert (VD[b].get(GRB.DoubleAttr.X) == 0);
-                    if (countRepublicanWins) assert (VR[b].get(GRB.DoubleAttr.X) == 1);
-                }
+    /**
+     * Change the votes of populated cell i and patch their coefficients in the win and symmetry
+     * rows of the built model, the model is not rebuilt
+     */
+    void setVotes(int i, int democrats, int republicans) throws Exception {
+        if (C == null || bigM == BigM.INDICATOR) {
+            // Vote classes and indicator constraints are fixed when the model is built
+            throw new IllegalStateException();
+        }
+        cells.d[i] = democrats;
+        cells.r[i] = republicans;
+        long lead = (long) democrats - republicans;
+        for (int b = 0; b < districts; b++) {
+            // lossMargin of the democrats is R[b] - D[b], of the republicans D[b] - R[b]
+            if (VD != null) {
+                model.setCoefficient(VDRows[2 * b], C[i][b], -lead);
+                model.setCoefficient(VDRows[2 * b + 1], C[i][b], -lead);
+            }
+            if (VR != null) {
+                model.setCoefficient(VRRows[2 * b], C[i][b], lead);
+                model.setCoefficient(VRRows[2 * b + 1], C[i][b], lead);
             }
+        }
+        if (SRows != null) {
+            // Row b is margin[b] - margin[b+1] >= 0
+            long margin = symmetryDemocrats ? lead : -lead;
+            for (int b = 0; b + 1 < districts; b++) {
+                model.setCoefficient(SRows[b], C[i][b], margin);
+                model.setCoefficient(SRows[b], C[i][b + 1], -margin);
+            }
+        }
+    }
 
-            // There can not be more winner than 10
-            assert (demVictoryCount + repVictoryCount <= 10);
+    /**
+     * Recompute M of the win rows after vote changes, M given to the constructor stays
+     */
+    void refreshWinM() throws Exception {
+        if (bigM == BigM.GIVEN || bigM == BigM.INDICATOR)
+            return;
+        demWinM = refreshWinM(VD, VDRows, demWinM, winRowM(true), demWinsActive);
+        repWinM = refreshWinM(VR, VRRows, repWinM, winRowM(false), repWinsActive);
+    }
 
+    private double[] refreshWinM(int[] V, int[] rows, double[] winM, double[] newWinM, boolean active)
+            throws Exception {
+        if (V == null || Arrays.equals(winM, newWinM))
+            return winM;
+        for (int b = 0; b < districts; b++) {
+            model.setCoefficient(rows[2 * b], V[b], newWinM[0]);
+            model.setCoefficient(rows[2 * b + 1], V[b], newWinM[1]);
+            if (active) {
+                model.setRhs(rows[2 * b + 1], newWinM[1] - 1);
+            }
         }
+        return newWinM;
+    }
 
-        double exec = (stop - start) / 1000d;
-        System.out.println("--------------------------------------------------------------------------------------");
-        System.out.println("                                    INFO");
-        System.out.println("--------------------------------------------------------------------------------------");
-        System.out.println("Maximal Difference between R/D: " + maxDiff);
-        System.out.println("Gurobi exec (s): " + exec );
-        System.out.println("");
+    /**
+     * Coefficients {M1, M2} of the win rows of a party: M1 is at least the largest margin of the
+     * party in a district, M2 - 1 at least the largest margin of the other party
+     */
+    private double[] winRowM(boolean democrats) {
+        switch (bigM) {
+            case GIVEN:
+                return new double[]{M, M};
+            case GLOBAL:
+                return new double[]{Math.max(0, maxDistrictMargin(democrats, 1, cells.count)),
+                        Math.max(1, maxDistrictMargin(!democrats, 1, cells.count) + 1)};
+            default:
+                return tightWinRowM(democrats);
+        }
+    }
 
-        // Dispose of model and environment
-        model.dispose();
-        env.dispose();
+    /**
+     * Smallest coefficients {M1, M2} of the win rows of a party that still allow every districting
+     */
+    private double[] tightWinRowM(boolean democrats) {
+        // Every other district needs districtSize cells
+        int maxCells = (int) Math.max(DISTRICT_SIZE, cells.count - (long) (districts - 1) * DISTRICT_SIZE);
+        return new double[]{Math.max(0, maxDistrictMargin(democrats, DISTRICT_SIZE, maxCells)),
+                Math.max(1, maxDistrictMargin(!democrats, DISTRICT_SIZE, maxCells) + 1)};
+    }
 
-        return demVictoryCount;
+    /**
+     * Win rows of the counted parties allow every districting and force its wins, false for a given M
+     * below the tight coefficients
+     */
+    private boolean exactWinRows(boolean countDemocratWins, boolean countRepublicanWins) {
+        if (bigM != BigM.GIVEN)
+            return true;
+        for (boolean democrats : new boolean[]{true, false}) {
+            if (democrats ? countDemocratWins : countRepublicanWins) {
+                double[] tight = tightWinRowM(democrats);
+                if (M < tight[0] || M < tight[1])
+                    return false;
+            }
+        }
+        return true;
     }
 
-    private int[][] getRepublicanVotes(int width, int height) throws Exception {
-        int[][] r = new int[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int value = Integer.parseInt(next());
-                r[y][x] = value;
+    /**
+     * Largest margin of a party in a district of minCells to maxCells cells
+     */
+    private long maxDistrictMargin(boolean democrats, int minCells, int maxCells) {
+        long[] margin = new long[cells.count];
+        for (int i = 0; i < cells.count; i++) {
+            margin[i] = democrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+        }
+        Arrays.sort(margin);
+
+        // Best prefix of the cells sorted by decreasing margin
+        long best = Long.MIN_VALUE;
+        long sum = 0;
+        for (int k = 1; k <= Math.min(maxCells, cells.count); k++) {
+            sum += margin[cells.count - k];
+            if (k >= minCells) {
+                best = Math.max(best, sum);
             }
         }
-        return r;
+        return best == Long.MIN_VALUE ? sum : best;
+    }
+
+    /**
+     * Objective: Sum victories VD/VR
+     */
+    private LinearExpr winObjective(boolean democrats) {
+        LinearExpr sumV = new LinearExpr(districts);
+        sumV.addTerms(null, democrats ? VD : VR);
+        return sumV;
+    }
+
+    /**
+     * Greedy districting as MIP start
+     */
+    private void setWarmStart(boolean optimizeDemocrats) throws Exception {
+        int[] startDistrict = GreedyDistricting.assign(cells, districts, DISTRICT_SIZE, optimizeDemocrats);
+        if (startDistrict != null) {
+            setStart(startDistrict);
+        }
     }
 
-    private int[][] getDemocratVotes(int width, int height) throws Exception {
-        int[][] d = new int[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int value = Integer.parseInt(next());
-                d[y][x] = value;
+    /**
+     * Districting of the cells and the wins it yields under the current votes as MIP start
+     */
+    void setStart(int[] startDistrict) throws Exception {
+        int[] d = cells.d;
+        int[] r = cells.r;
+        if (SRows != null) {
+            startDistrict = orderedByMargin(startDistrict);
+        }
+        long[] startD = new long[districts];
+        long[] startR = new long[districts];
+        int[][] startN = aggregateCells ? new int[N.length][districts] : null;
+        for (int i = 0; i < cells.count; i++) {
+            int b = startDistrict[i];
+            startD[b] += d[i];
+            startR[b] += r[i];
+            if (aggregateCells) {
+                startN[classOf[i]][b]++;
+            } else {
+                for (int c = 0; c < districts; c++) {
+                    model.setStart(C[i][c], c == b ? 1 : 0);
+                }
+            }
+        }
+        if (aggregateCells) {
+            for (int k = 0; k < N.length; k++) {
+                for (int b = 0; b < districts; b++) {
+                    model.setStart(N[k][b], startN[k][b]);
+                }
+            }
+        }
+        for (int b = 0; b < districts; b++) {
+            if (VD != null) {
+                model.setStart(VD[b], demWinsActive && startD[b] > startR[b] ? 1 : 0);
+            }
+            if (VR != null) {
+                model.setStart(VR[b], repWinsActive && startR[b] > startD[b] ? 1 : 0);
             }
         }
-        return d;
     }
 
-    private void loadRepublicanFile(int width, int height) throws Exception {
-        inp = new BufferedReader(new FileReader(getFileFromResources(FILE_REPUBLICANS)));
-        inpLine = inp.readLine();
-        if (width != Integer.parseInt(next()) || height != Integer.parseInt(next()))
-            throw new IllegalStateException("Files have not same number of cells");
+    /**
+     * Districting with labels ordered by decreasing margin as required by the symmetry rows
+     */
+    private int[] orderedByMargin(int[] district) {
+        long[] margin = new long[districts];
+        for (int i = 0; i < cells.count; i++) {
+            margin[district[i]] += symmetryDemocrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+        }
+        Integer[] order = new Integer[districts];
+        for (int b = 0; b < districts; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, (b1, b2) -> Long.compare(margin[b2], margin[b1]));
+        int[] label = new int[districts];
+        for (int b = 0; b < districts; b++) {
+            label[order[b]] = b;
+        }
+        int[] ordered = new int[district.length];
+        for (int i = 0; i < district.length; i++) {
+            ordered[i] = label[district[i]];
+        }
+        return ordered;
     }
 
-    private void loadDemocratFile() throws IOException {
-        // Read democrats file
-        inp = new BufferedReader(new FileReader(getFileFromResources(FILE_DEMOCRATS)));
-        inpLine = inp.readLine();
+    /**
+     * Read and check win counts and districting of the optimized model, returns the maximal
+     * difference between the votes of the parties in a district
+     */
+    int readResults(boolean countDemocratWins, boolean countRepublicanWins, boolean optimizeDemocrats)
+            throws Exception {
+        firstSolutionTime = model.getFirstSolutionTime();
+        demVictoryCount = 0;
+        repVictoryCount = 0;
+        district = null;
+        validation = null;
+
+        // Get results
+        status = model.getStatus();
+        if (status != MipModel.OPTIMAL)
+            return Integer.MIN_VALUE;
+
+        // Values of all variables in one query
+        double[] values = model.getValues();
+        boolean[] demWin = countDemocratWins ? new boolean[districts] : null;
+        boolean[] repWin = countRepublicanWins ? new boolean[districts] : null;
+        for (int b = 0; b < districts; b++) {
+            if (countDemocratWins && values[VD[b]] > 0.5) {
+                demWin[b] = true;
+                demVictoryCount++;
+            }
+            if (countRepublicanWins && values[VR[b]] > 0.5) {
+                repWin[b] = true;
+                repVictoryCount++;
+            }
+        }
+
+        // Get district of each cell and the number of districts it is assigned
+        district = new int[cells.count];
+        int[] assignments = new int[cells.count];
+        if (aggregateCells) {
+            // Map class counts back to concrete cells
+            int[][] remaining = new int[N.length][districts];
+            for (int k = 0; k < N.length; k++) {
+                for (int b = 0; b < districts; b++) {
+                    remaining[k][b] = (int) Math.round(values[N[k][b]]);
+                }
+            }
+            for (int i = 0; i < cells.count; i++) {
+                district[i] = -1;
+                int k = classOf[i];
+                for (int b = 0; b < districts; b++) {
+                    if (remaining[k][b] > 0) {
+                        remaining[k][b]--;
+                        district[i] = b;
+                        assignments[i] = 1;
+                        break;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < cells.count; i++) {
+                district[i] = -1;
+                for (int b = 0; b < districts; b++) {
+                    if (values[C[i][b]] > 0.5) {
+                        district[i] = b;
+                        assignments[i]++;
+                    }
+                }
+            }
+        }
+
+        // Check model
+        validation = SolutionValidator.validate(cells, districts, DISTRICT_SIZE, district, assignments, demWin, repWin);
+        if (contiguityCuts != null && validation.unassignedCells == 0) {
+            validation.connected = contiguityCuts.connected(district);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, validation.maxDiff);
     }
 
-    private String next() throws Exception {
-        int nextPos = inpLine.indexOf(' ', inpPos + 1);
-        String token = inpLine.substring(inpPos, nextPos == -1 ? inpLine.length() : nextPos);
-        if (nextPos == -1)
-            inpLine = inp.readLine();
-        inpPos = nextPos + 1;
-        return token;
+    private void printInfo(int maxDiff) {
+        System.out.println("--------------------------------------------------------------------------------------");
+        System.out.println("                                    INFO");
+        System.out.println("--------------------------------------------------------------------------------------");
+        System.out.println("Maximal Difference between R/D: " + maxDiff);
+        if (validation != null && !validation.valid()) {
+            System.out.println("Solution " + validation);
+        }
+        System.out.println("Solver exec (s): " + solveTime);
+        System.out.println("First solution (s): " + firstSolutionTime);
+        if (contiguityCuts != null) {
+            System.out.println("Contiguity cuts: " + contiguityCuts.cutCount);
+        }
+        System.out.println("");
     }
 
     private File getFileFromResources(String fileName) {
         ClassLoader classLoader = this.getClass().getClassLoader();
 
         URL resource = classLoader.getResource(fileName);
-        return new File(resource.getFile());
+        // Fall back to the file system for files outside the classpath
+        return resource != null ? new File(resource.getFile()) : new File(fileName);
     }
 }
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves a list of election scenarios concurrently in one JVM.
+ * Each worker thread keeps one solver environment for all of its scenarios, since a gurobi
+ * environment must not be used by two threads at once. The cores are split evenly between
+ * the workers and passed to the solver as thread limit.
+ */
+public class ElectionBatch {
+
+    /**
+     * Solver used for all scenarios
+     */
+    public final SolverBackend solver;
+    /**
+     * Number of cores available to the batch
+     */
+    public final int cores;
+    /**
+     * Log shared by all elections of the batch, stdout if null
+     */
+    public MetricsLog metrics;
+
+    public ElectionBatch(SolverBackend solver, int cores) {
+        if (cores < 1)
+            throw new IllegalArgumentException("At least one core is required");
+        this.solver = solver;
+        this.cores = cores;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new Scenario("dem_tc.in", "rep_tc.in", 135, 200000000, true));
+        scenarios.add(new Scenario("dem_tc.in", "rep_tc.in", 135, 200000000, false));
+
+        ElectionBatch batch = new ElectionBatch(SolverBackend.GUROBI, Runtime.getRuntime().availableProcessors());
+        List<Election> elections = batch.run(scenarios);
+        for (int i = 0; i < elections.size(); i++) {
+            Election election = elections.get(i);
+            System.out.println(scenarios.get(i) + ": status " + election.status + ", democrats "
+                    + election.demVictoryCount + ", republicans " + election.repVictoryCount);
+        }
+    }
+
+    /**
+     * Solve all scenarios and return the elections in the order of the scenarios
+     */
+    public List<Election> run(List<Scenario> scenarios) throws Exception {
+        int workers = Math.max(1, Math.min(cores, scenarios.size()));
+        int threadsPerSolve = Math.max(1, cores / workers);
+
+        Election[] elections = new Election[scenarios.size()];
+        AtomicInteger nextScenario = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(executor.submit(() -> {
+                    try (SolverEnvironment environment = solver.newEnvironment()) {
+                        for (int i = nextScenario.getAndIncrement(); i < elections.length; i = nextScenario.getAndIncrement()) {
+                            elections[i] = scenarios.get(i).solve(solver, environment, threadsPerSolve, metrics);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Election> result = new ArrayList<>(elections.length);
+        for (Election election : elections) {
+            result.add(election);
+        }
+        return result;
+    }
+
+    /**
+     * Immutable input of one election run
+     */
+    public static class Scenario {
+        public final String fileDemocrats;
+        public final String fileRepublicans;
+        public final int districtSize;
+        public final int m;
+        /**
+         * Maximize democrat wins if true, republican wins otherwise
+         */
+        public final boolean optimizeDemocrats;
+
+        public Scenario(String fileDemocrats, String fileRepublicans, int districtSize, int m, boolean optimizeDemocrats) {
+            this.fileDemocrats = fileDemocrats;
+            this.fileRepublicans = fileRepublicans;
+            this.districtSize = districtSize;
+            this.m = m;
+            this.optimizeDemocrats = optimizeDemocrats;
+        }
+
+        Election solve(SolverBackend solver, SolverEnvironment environment, int threads, MetricsLog metrics) throws Exception {
+            Election election = new Election(fileDemocrats, fileRepublicans, districtSize, m);
+            election.solver = solver;
+            election.environment = environment;
+            election.threads = threads;
+            election.metrics = metrics;
+            // Count wins of both parties, this also skips the model export shared by all runs
+            election.winCount(true, true, optimizeDemocrats);
+            return election;
+        }
+
+        @Override
+        public String toString() {
+            return fileDemocrats + "/" + fileRepublicans + " size " + districtSize
+                    + (optimizeDemocrats ? " max democrats" : " max republicans");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Long-lived districting of one party that follows vote updates of single cells, e.g. precinct
+ * counts arriving on election night. The grid is read and the model is built once. An update
+ * patches the coefficients of the cell in the win and symmetry rows in place, and every solve
+ * starts from the districting of the previous one with the wins recomputed from the new votes.
+ * Cells without votes are not part of the model, precincts that have not reported yet are passed
+ * as reporting cells and start with zero votes.
+ * Vote classes and indicator constraints are fixed at build time, so aggregateCells and
+ * BigM.INDICATOR are not supported.
+ */
+public class ElectionSession implements AutoCloseable {
+
+    /**
+     * Election holding the model, the cells with the current votes and the results of the last solve
+     */
+    public final Election election;
+    /**
+     * Maximize democrat wins if true, republican wins otherwise
+     */
+    public final boolean optimizeDemocrats;
+
+    // Results
+    /**
+     * Number of solves so far
+     */
+    public int solveCount;
+    /**
+     * Vote updates since the last solve
+     */
+    public int pendingUpdates;
+    /**
+     * Seconds spent patching the model for the updates of the last solve
+     */
+    public double updateTime;
+
+    // Districting of the last solve, MIP start of the next one
+    private int[] district;
+    // Seconds spent patching since the last solve
+    private double pendingTime;
+
+    public ElectionSession(Election election, boolean optimizeDemocrats) throws Exception {
+        this(election, optimizeDemocrats, new int[0], new int[0]);
+    }
+
+    /**
+     * Session whose model also holds the cells (reportingX[k], reportingY[k]) that have no votes yet
+     */
+    public ElectionSession(Election election, boolean optimizeDemocrats, int[] reportingX, int[] reportingY)
+            throws Exception {
+        if (election.aggregateCells || election.bigM == BigM.INDICATOR) {
+            // Coefficients of vote classes and indicators can not be patched
+            throw new IllegalStateException();
+        }
+        if (reportingX.length != reportingY.length)
+            throw new IllegalArgumentException("Reporting cells need an x and a y coordinate");
+        this.election = election;
+        this.optimizeDemocrats = optimizeDemocrats;
+        if (reportingX.length > 0) {
+            // Reporting cells get columns with zero votes, their updates patch the coefficients from 0
+            CellIndex cells = election.cells != null ? election.cells : election.readCells();
+            election.cells = cells.withCells(reportingX, reportingY);
+        }
+        election.readAndBuild(optimizeDemocrats, !optimizeDemocrats, optimizeDemocrats);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Election election = new Election("dem_tc.in", "rep_tc.in", 135);
+        election.solver = SolverBackend.JAVA;
+        try (ElectionSession session = new ElectionSession(election, true)) {
+            System.out.println("Democrats: " + session.solve());
+
+            // Swing the first cell to the republicans
+            CellIndex cells = election.cells;
+            session.updateVotes(cells.x[0], cells.y[0], cells.r[0], cells.d[0]);
+            System.out.println("Democrats after update: " + session.solve());
+        }
+    }
+
+    /**
+     * Set the votes of the populated cell with coordinates (x,y), takes effect with the next solve
+     */
+    public void updateVotes(int x, int y, int democrats, int republicans) throws Exception {
+        int i = election.cells.indexOf(x, y);
+        if (i < 0)
+            throw new IllegalArgumentException("Cell (" + x + "," + y + ") is neither populated nor reporting");
+        if (democrats < 0 || republicans < 0)
+            throw new IllegalArgumentException("Votes must not be negative");
+        long start = System.nanoTime();
+        election.setVotes(i, democrats, republicans);
+        pendingTime += (System.nanoTime() - start) / 1e9;
+        pendingUpdates++;
+    }
+
+    /**
+     * Optimize the model with the current votes and return the win count of the party.
+     * Results and districting are available in election.
+     */
+    public int solve() throws Exception {
+        long start = System.nanoTime();
+        election.refreshWinM();
+        updateTime = pendingTime + (System.nanoTime() - start) / 1e9;
+
+        // Previous districting as further start next to the greedy one of warmStart
+        election.solveTime = election.optimizeWins(optimizeDemocrats, district);
+        election.verify(optimizeDemocrats, !optimizeDemocrats, optimizeDemocrats);
+        if (election.district != null) {
+            district = election.district;
+        }
+        solveCount++;
+        pendingUpdates = 0;
+        pendingTime = 0;
+        return optimizeDemocrats ? election.demVictoryCount : election.repVictoryCount;
+    }
+
+    /**
+     * Release the model and its solver resources, failures of the solver are wrapped in an IllegalStateException
+     */
+    @Override
+    public void close() {
+        try {
+            election.model.dispose();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
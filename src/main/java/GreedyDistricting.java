@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+/**
+ * Greedy districting heuristic used as MIP start.
+ * Cells are sorted by the margin of the optimized party. For k = B, B-1, ... the strongest cells
+ * are packed into k winning districts of exactly districtSize cells, until every district of the
+ * packing is won. A cell with positive margin goes to the district with the smallest margin so far,
+ * any other cell to the district with the largest margin.
+ * The remaining cells are spread over the other districts.
+ */
+class GreedyDistricting {
+
+    /**
+     * District of each cell, null if there are fewer than districts * districtSize cells
+     */
+    static int[] assign(CellIndex cells, int districts, int districtSize, boolean optimizeDemocrats) {
+        int n = cells.count;
+        if (districtSize < 1 || n < (long) districts * districtSize)
+            return null;
+
+        // Margin of the optimized party
+        long[] margin = new long[n];
+        int[] size = new int[n];
+        for (int i = 0; i < n; i++) {
+            margin[i] = optimizeDemocrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+            size[i] = 1;
+        }
+        return assign(margin, size, districts, districtSize);
+    }
+
+    /**
+     * District of each unit with the given margin of the optimized party and number of cells,
+     * every district holds at least districtSize cells. Null if no packing reaches the size.
+     */
+    static int[] assign(long[] margin, int[] cells, int districts, int districtSize) {
+        int n = margin.length;
+
+        // Units sorted by decreasing margin
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Negated margin in the upper bits sorts strongest units first, index in the lower bits.
+            // Margins of aggregated units may exceed 31 bits, they are clamped and keep the index order.
+            long clamped = Math.max(-Integer.MAX_VALUE, Math.min(Integer.MAX_VALUE, margin[i]));
+            keys[i] = (-clamped << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) keys[i];
+        }
+
+        int[] district = new int[n];
+        long[] sum = new long[districts];
+        long[] size = new long[districts];
+        for (int k = districts; k >= 0; k--) {
+            Arrays.fill(sum, 0);
+            Arrays.fill(size, 0);
+
+            // Pack the strongest units into k districts until they are full, all units if every district has to be won
+            int filled = 0;
+            int p = 0;
+            for (; p < n && (k == districts || filled < k); p++) {
+                int i = order[p];
+                int target = -1;
+                for (int b = 0; b < k; b++) {
+                    boolean full = filled < k && size[b] >= districtSize;
+                    if (full)
+                        continue;
+                    if (target < 0 || (margin[i] > 0 ? sum[b] < sum[target] : sum[b] > sum[target])) {
+                        target = b;
+                    }
+                }
+                district[i] = target;
+                sum[target] += margin[i];
+                boolean wasFull = size[target] >= districtSize;
+                size[target] += cells[i];
+                if (!wasFull && size[target] >= districtSize) {
+                    filled++;
+                }
+            }
+
+            boolean won = filled == k;
+            for (int b = 0; b < k; b++) {
+                won &= sum[b] > 0;
+            }
+            if (!won)
+                continue;
+
+            // Spread the remaining units over the other districts, each to the smallest
+            for (; p < n; p++) {
+                int target = k;
+                for (int b = k + 1; b < districts; b++) {
+                    if (size[b] < size[target]) {
+                        target = b;
+                    }
+                }
+                district[order[p]] = target;
+                size[target] += cells[order[p]];
+            }
+            boolean sized = true;
+            for (int b = k; b < districts; b++) {
+                sized &= size[b] >= districtSize;
+            }
+            if (sized)
+                return district;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,371 @@
+import gurobi.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link MipModel} backed by gurobi, requires gurobi.jar and a license.
+ */
+public class GurobiModel implements MipModel {
+
+    private final GRBEnv env;
+    /**
+     * Environment is created and disposed by this model
+     */
+    private final boolean ownsEnv;
+    private GRBModel model;
+    /**
+     * Gurobi variable of each variable index
+     */
+    private GRBVar[] vars = new GRBVar[64];
+    private int varCount;
+    /**
+     * Gurobi constraint of each constraint index
+     */
+    private GRBConstr[] constrs = new GRBConstr[64];
+    private int constrCount;
+    private double firstSolutionTime = -1;
+    private ProgressListener listener;
+    private LazyConstraints lazy;
+    /**
+     * Number of scenarios of the last optimizeObjectives, 0 for a single objective
+     */
+    private int scenarioCount;
+    /**
+     * Number of MIP starts
+     */
+    private int startCount = 1;
+
+    public GurobiModel() throws GRBException {
+        this(new GRBEnv(), true);
+    }
+
+    /**
+     * Model in a shared environment, the environment is not disposed with the model
+     */
+    public GurobiModel(GRBEnv env) throws GRBException {
+        this(env, false);
+    }
+
+    private GurobiModel(GRBEnv env, boolean ownsEnv) throws GRBException {
+        this.env = env;
+        this.ownsEnv = ownsEnv;
+        model = new GRBModel(env);
+    }
+
+    @Override
+    public int addVar(double lb, double ub, double obj, char type, String name) throws GRBException {
+        if (varCount == vars.length) {
+            vars = Arrays.copyOf(vars, 2 * varCount);
+        }
+        vars[varCount] = model.addVar(lb, ub, obj, type, name);
+        return varCount++;
+    }
+
+    @Override
+    public int addVars(int count, double lb, double ub, char type, String[] names) throws GRBException {
+        if (varCount + count > vars.length) {
+            vars = Arrays.copyOf(vars, Math.max(2 * vars.length, varCount + count));
+        }
+        double[] lbs = new double[count];
+        double[] ubs = new double[count];
+        char[] types = new char[count];
+        Arrays.fill(lbs, lb);
+        Arrays.fill(ubs, ub);
+        Arrays.fill(types, type);
+        GRBVar[] added = model.addVars(lbs, ubs, null, types, names, 0, count);
+        System.arraycopy(added, 0, vars, varCount, count);
+        varCount += count;
+        return varCount - count;
+    }
+
+    @Override
+    public int addConstr(LinearExpr expr, char sense, double rhs, String name) throws GRBException {
+        if (constrCount == constrs.length) {
+            constrs = Arrays.copyOf(constrs, 2 * constrCount);
+        }
+        constrs[constrCount] = model.addConstr(toGRB(expr), sense, rhs, name);
+        return constrCount++;
+    }
+
+    @Override
+    public int addConstrs(int count, int[] start, int[] vars, double[] coeffs, char[] sense, double[] rhs,
+                          String[] names) throws GRBException {
+        if (constrCount + count > constrs.length) {
+            constrs = Arrays.copyOf(constrs, Math.max(2 * constrs.length, constrCount + count));
+        }
+        // Gurobi variables of all terms, each row adds its range in one call
+        GRBVar[] termVars = new GRBVar[start[count]];
+        for (int t = 0; t < termVars.length; t++) {
+            termVars[t] = this.vars[vars[t]];
+        }
+        GRBLinExpr[] exprs = new GRBLinExpr[count];
+        for (int k = 0; k < count; k++) {
+            exprs[k] = new GRBLinExpr();
+            exprs[k].addTerms(coeffs, termVars, start[k], start[k + 1] - start[k]);
+        }
+        GRBConstr[] added = model.addConstrs(exprs, sense, rhs, names);
+        System.arraycopy(added, 0, constrs, constrCount, count);
+        constrCount += count;
+        return constrCount - count;
+    }
+
+    @Override
+    public void addIndicator(int binVar, int binVal, LinearExpr expr, char sense, double rhs, String name)
+            throws GRBException {
+        model.addGenConstrIndicator(vars[binVar], binVal, toGRB(expr), sense, rhs, name);
+    }
+
+    @Override
+    public void setRhs(int row, double rhs) throws GRBException {
+        constrs[row].set(GRB.DoubleAttr.RHS, Math.max(-GRB.INFINITY, Math.min(GRB.INFINITY, rhs)));
+    }
+
+    @Override
+    public void setCoefficient(int row, int var, double coeff) throws GRBException {
+        model.chgCoeff(constrs[row], vars[var], coeff);
+    }
+
+    @Override
+    public void setBounds(int var, double lb, double ub) throws GRBException {
+        vars[var].set(GRB.DoubleAttr.LB, lb);
+        vars[var].set(GRB.DoubleAttr.UB, ub);
+    }
+
+    @Override
+    public void setObjective(LinearExpr expr, int sense) throws GRBException {
+        model.setObjective(toGRB(expr), sense);
+    }
+
+    @Override
+    public void setStart(int var, double value) throws GRBException {
+        vars[var].set(GRB.DoubleAttr.Start, value);
+    }
+
+    @Override
+    public void selectStart(int k) throws GRBException {
+        if (k >= startCount) {
+            startCount = k + 1;
+            model.set(GRB.IntAttr.NumStart, startCount);
+            model.update();
+        }
+        model.set(GRB.IntParam.StartNumber, k);
+    }
+
+    @Override
+    public void setThreads(int threads) throws GRBException {
+        model.set(GRB.IntParam.Threads, threads);
+    }
+
+    @Override
+    public void setTimeLimit(double seconds) throws GRBException {
+        model.set(GRB.DoubleParam.TimeLimit, Math.min(GRB.INFINITY, seconds));
+    }
+
+    @Override
+    public void optimize() throws GRBException {
+        if (scenarioCount > 0) {
+            // Back to the single objective
+            model.set(GRB.IntAttr.NumScenarios, 0);
+            scenarioCount = 0;
+        }
+        run();
+    }
+
+    /**
+     * All objectives are solved in one multi-scenario optimization, the branch and bound tree is
+     * shared. Objective 0 is the base objective, scenario k replaces it by objective k.
+     */
+    @Override
+    public void optimizeObjectives(LinearExpr[] objectives, int sense) throws GRBException {
+        setObjective(objectives[0], sense);
+        model.set(GRB.IntAttr.NumScenarios, objectives.length);
+        model.update();
+        for (int k = 0; k < objectives.length; k++) {
+            // Coefficients of scenario k, terms of the base objective not in objective k are 0
+            Map<Integer, Double> coeffs = new LinkedHashMap<>();
+            for (int i = 0; i < objectives[0].size; i++) {
+                coeffs.put(objectives[0].vars[i], 0.0);
+            }
+            for (int i = 0; i < objectives[k].size; i++) {
+                coeffs.merge(objectives[k].vars[i], objectives[k].coeffs[i], Double::sum);
+            }
+            model.set(GRB.IntParam.ScenarioNumber, k);
+            for (Map.Entry<Integer, Double> coeff : coeffs.entrySet()) {
+                vars[coeff.getKey()].set(GRB.DoubleAttr.ScenNObj, coeff.getValue());
+            }
+        }
+        scenarioCount = objectives.length;
+        run();
+        selectObjective(0);
+    }
+
+    /**
+     * Gurobi reports one status and one first solution time for all scenarios
+     */
+    @Override
+    public void selectObjective(int k) throws GRBException {
+        model.set(GRB.IntParam.ScenarioNumber, k);
+    }
+
+    private void run() throws GRBException {
+        firstSolutionTime = -1;
+        Exception[] separationError = new Exception[1];
+        model.setCallback(new GRBCallback() {
+            /**
+             * Seconds of the next progress sample
+             */
+            private double nextProgress;
+
+            @Override
+            protected void callback() {
+                if (where == GRB.Callback.MIPSOL && lazy != null) {
+                    try {
+                        int[] cutCount = new int[1];
+                        lazy.separate(getSolution(Arrays.copyOf(vars, varCount)), (expr, sense, rhs) -> {
+                            addLazy(toGRB(expr), sense, rhs);
+                            cutCount[0]++;
+                        });
+                        // Rejected candidates are no incumbents
+                        if (cutCount[0] > 0)
+                            return;
+                    } catch (Exception e) {
+                        // Without separation the candidate can not be accepted
+                        separationError[0] = e;
+                        abort();
+                        return;
+                    }
+                }
+                try {
+                    if (where == GRB.Callback.MIPSOL && firstSolutionTime < 0) {
+                        firstSolutionTime = getDoubleInfo(GRB.Callback.RUNTIME);
+                    }
+                    if (listener == null)
+                        return;
+                    if (where == GRB.Callback.MIPSOL) {
+                        // Every new incumbent
+                        double time = getDoubleInfo(GRB.Callback.RUNTIME);
+                        listener.progress(time, value(getDoubleInfo(GRB.Callback.MIPSOL_OBJ)),
+                                value(getDoubleInfo(GRB.Callback.MIPSOL_OBJBND)), (long) getDoubleInfo(GRB.Callback.MIPSOL_NODCNT));
+                        nextProgress = time + ProgressListener.INTERVAL;
+                    } else if (where == GRB.Callback.MIP) {
+                        double time = getDoubleInfo(GRB.Callback.RUNTIME);
+                        if (time >= nextProgress) {
+                            listener.progress(time, value(getDoubleInfo(GRB.Callback.MIP_OBJBST)),
+                                    value(getDoubleInfo(GRB.Callback.MIP_OBJBND)), (long) getDoubleInfo(GRB.Callback.MIP_NODCNT));
+                            nextProgress = time + ProgressListener.INTERVAL;
+                        }
+                    }
+                } catch (GRBException e) {
+                    // Timing and progress are informational only
+                }
+            }
+
+            /**
+             * Gurobi reports missing objective values as infinity
+             */
+            private double value(double objective) {
+                return Math.abs(objective) >= GRB.INFINITY ? Double.NaN : objective;
+            }
+        });
+        model.optimize();
+        if (separationError[0] != null) {
+            throw new IllegalStateException("Separation of lazy constraints failed", separationError[0]);
+        }
+    }
+
+    @Override
+    public double getFirstSolutionTime() {
+        return firstSolutionTime;
+    }
+
+    @Override
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Lazy constraints are added through the callback and are not part of the written model
+     */
+    @Override
+    public void setLazyConstraints(LazyConstraints lazy) throws GRBException {
+        this.lazy = lazy;
+        model.set(GRB.IntParam.LazyConstraints, lazy != null ? 1 : 0);
+    }
+
+    @Override
+    public int getStatus() throws GRBException {
+        return model.get(GRB.IntAttr.Status);
+    }
+
+    @Override
+    public double getValue(int var) throws GRBException {
+        return vars[var].get(scenarioCount > 0 ? GRB.DoubleAttr.ScenNX : GRB.DoubleAttr.X);
+    }
+
+    @Override
+    public double[] getValues() throws GRBException {
+        // One attribute query for all variables instead of one per variable
+        return model.get(scenarioCount > 0 ? GRB.DoubleAttr.ScenNX : GRB.DoubleAttr.X, Arrays.copyOf(vars, varCount));
+    }
+
+    @Override
+    public void write(String filename) throws GRBException {
+        model.write(filename);
+    }
+
+    @Override
+    public void read(String filename) throws GRBException {
+        model.dispose();
+        model = new GRBModel(env, filename);
+        GRBVar[] readVars = model.getVars();
+        varCount = readVars.length;
+        vars = Arrays.copyOf(readVars, Math.max(64, varCount));
+        GRBConstr[] readConstrs = model.getConstrs();
+        constrCount = readConstrs.length;
+        constrs = Arrays.copyOf(readConstrs, Math.max(64, constrCount));
+    }
+
+    @Override
+    public void dispose() throws GRBException {
+        model.dispose();
+        if (ownsEnv) {
+            env.dispose();
+        }
+    }
+
+    private GRBLinExpr toGRB(LinearExpr expr) {
+        GRBLinExpr grbExpr = new GRBLinExpr();
+        for (int i = 0; i < expr.size; i++) {
+            grbExpr.addTerm(expr.coeffs[i], vars[expr.vars[i]]);
+        }
+        return grbExpr;
+    }
+
+    /**
+     * Gurobi environment shared by several models, the license is checked out once
+     */
+    public static class Environment implements SolverEnvironment {
+
+        private final GRBEnv env;
+
+        public Environment() throws GRBException {
+            env = new GRBEnv();
+        }
+
+        @Override
+        public MipModel newModel() throws GRBException {
+            return new GurobiModel(env);
+        }
+
+        @Override
+        public void close() {
+            try {
+                env.dispose();
+            } catch (GRBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
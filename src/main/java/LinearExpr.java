@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * Solver independent linear expression over variable indices of a {@link MipModel}.
+ * Terms are stored in primitive arrays, duplicate variables are merged by the model.
+ */
+public class LinearExpr {
+
+    /**
+     * Variable index of each term
+     */
+    int[] vars;
+    /**
+     * Coefficient of each term
+     */
+    double[] coeffs;
+    /**
+     * Number of terms
+     */
+    int size;
+
+    public LinearExpr() {
+        this(8);
+    }
+
+    public LinearExpr(int capacity) {
+        vars = new int[Math.max(capacity, 1)];
+        coeffs = new double[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add term coeff * var
+     */
+    public void addTerm(double coeff, int var) {
+        if (size == vars.length) {
+            vars = Arrays.copyOf(vars, 2 * size);
+            coeffs = Arrays.copyOf(coeffs, 2 * size);
+        }
+        vars[size] = var;
+        coeffs[size] = coeff;
+        size++;
+    }
+
+    /**
+     * Add terms coeffs[i] * vars[i], all coefficients are 1 if coeffs is null
+     */
+    public void addTerms(double[] coeffs, int[] vars) {
+        for (int i = 0; i < vars.length; i++) {
+            addTerm(coeffs == null ? 1.0 : coeffs[i], vars[i]);
+        }
+    }
+
+    /**
+     * Add all terms of another expression
+     */
+    public void add(LinearExpr expr) {
+        multAdd(1.0, expr);
+    }
+
+    /**
+     * Add all terms of another expression multiplied by m
+     */
+    public void multAdd(double m, LinearExpr expr) {
+        for (int i = 0; i < expr.size; i++) {
+            addTerm(m * expr.coeffs[i], expr.vars[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getVar(int i) {
+        return vars[i];
+    }
+
+    public double getCoeff(int i) {
+        return coeffs[i];
+    }
+}
@@ -0,0 +1,309 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Anytime simulated annealing over cell to district assignments for grids too large for the MIP.
+ * Moves relocate one cell or swap two cells of different districts. Per district vote totals,
+ * sizes and the win count are updated in O(1) per move. The search keeps every district at
+ * least districtSize cells large and returns the best assignment found within the time budget.
+ * Several independent starts run in parallel, one per core.
+ */
+public class LocalSearchDistricting {
+
+    /**
+     * Start temperature, a win is worth 1
+     */
+    private static final double START_TEMPERATURE = 1.0;
+    /**
+     * Temperature at the end of the time budget
+     */
+    private static final double END_TEMPERATURE = 1e-3;
+    /**
+     * Moves between two clock reads
+     */
+    private static final int CLOCK_INTERVAL = 4096;
+
+    public final CellIndex cells;
+    public final int districts;
+    public final int districtSize;
+    /**
+     * Maximize democrat wins if true, republican wins otherwise
+     */
+    public final boolean optimizeDemocrats;
+    /**
+     * Margin of the optimized party per cell
+     */
+    private final long[] margin;
+    /**
+     * Scale of the closeness term of lost districts
+     */
+    private final double marginScale;
+
+    public LocalSearchDistricting(CellIndex cells, int districts, int districtSize, boolean optimizeDemocrats) {
+        this.cells = cells;
+        this.districts = districts;
+        this.districtSize = districtSize;
+        this.optimizeDemocrats = optimizeDemocrats;
+        margin = new long[cells.count];
+        long total = 1;
+        for (int i = 0; i < cells.count; i++) {
+            margin[i] = optimizeDemocrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+            total += Math.abs(margin[i]);
+        }
+        // Average absolute margin of a district
+        marginScale = Math.max(1.0, (double) total / districts);
+    }
+
+    /**
+     * Usage: LocalSearchDistricting democrats.in republicans.in|- districtSize dem|rep seconds
+     * Use - as republican file for a binary grid.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5) {
+            System.err.println("Usage: LocalSearchDistricting <democrats.in> <republicans.in|-> <districtSize> <dem|rep> <seconds>");
+            System.exit(1);
+        }
+        File democratFile = new File(args[0]);
+        CellIndex cells = args[1].equals("-") ? VoteGridFile.read(democratFile)
+                : VoteGridReader.readCells(democratFile, new File(args[1]));
+        LocalSearchDistricting search = new LocalSearchDistricting(cells, Election.B, Integer.parseInt(args[2]), args[3].equals("dem"));
+        Result result = search.solve((long) (Double.parseDouble(args[4]) * 1000), Runtime.getRuntime().availableProcessors(), 1);
+        if (result == null) {
+            System.out.println("Infeasible: not enough populated cells");
+            return;
+        }
+        System.out.println("Best wins: " + result.wins + ", bound: " + result.bound + ", gap: " + result.gap());
+        System.out.println("Moves: " + result.moves + " in " + result.time + " seconds");
+    }
+
+    /**
+     * Upper bound on the wins of the optimized party. Every won district needs a cell with positive
+     * margin. k won districts hold at least k * districtSize cells with positive total margin, so the
+     * k * districtSize strongest cells have positive total margin.
+     */
+    public int bound() {
+        return bound(margin, districts, districtSize);
+    }
+
+    /**
+     * Upper bound on the wins over cells with the given margins of the optimized party
+     */
+    static int bound(long[] margin, int districts, int districtSize) {
+        long[] sorted = margin.clone();
+        Arrays.sort(sorted);
+        int bound = 0;
+        long prefix = 0;
+        int cell = sorted.length;
+        for (int k = 1; k <= districts && (long) k * districtSize <= sorted.length; k++) {
+            for (int c = 0; c < districtSize; c++) {
+                prefix += sorted[--cell];
+            }
+            if (prefix > 0 && sorted[sorted.length - k] > 0) {
+                bound = k;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Run starts independent searches in parallel for timeLimitMillis and return the best,
+     * null if there are fewer than districts * districtSize cells
+     */
+    public Result solve(long timeLimitMillis, int starts, long seed) throws Exception {
+        int[] greedy = GreedyDistricting.assign(cells, districts, districtSize, optimizeDemocrats);
+        if (greedy == null)
+            return null;
+
+        long deadline = System.currentTimeMillis() + timeLimitMillis;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, starts));
+        Result best = null;
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int s = 0; s < Math.max(1, starts); s++) {
+                final int start = s;
+                futures.add(executor.submit(() -> anneal(start == 0 ? greedy : randomAssignment(new SplittableRandom(seed - start)),
+                        new SplittableRandom(seed + start), deadline)));
+            }
+            for (Future<Result> future : futures) {
+                Result result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                if (best == null || result.wins > best.wins) {
+                    if (best != null) {
+                        result.moves += best.moves;
+                    }
+                    best = result;
+                } else {
+                    best.moves += result.moves;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        best.bound = bound();
+        best.time = (timeLimitMillis - (deadline - System.currentTimeMillis())) / 1000d;
+        return best;
+    }
+
+    /**
+     * Random assignment with at least districtSize cells per district
+     */
+    private int[] randomAssignment(SplittableRandom random) {
+        int n = cells.count;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        int[] district = new int[n];
+        for (int p = 0; p < n; p++) {
+            district[order[p]] = p < districts * districtSize ? p / districtSize : random.nextInt(districts);
+        }
+        return district;
+    }
+
+    private Result anneal(int[] initial, SplittableRandom random, long deadline) {
+        int n = cells.count;
+        int[] district = initial.clone();
+        long[] sum = new long[districts];
+        int[] size = new int[districts];
+        for (int i = 0; i < n; i++) {
+            sum[district[i]] += margin[i];
+            size[district[i]]++;
+        }
+        int wins = 0;
+        double score = 0;
+        for (int b = 0; b < districts; b++) {
+            wins += sum[b] > 0 ? 1 : 0;
+            score += score(sum[b]);
+        }
+
+        Result best = new Result(district.clone(), wins);
+        long startTime = System.currentTimeMillis();
+        double budget = Math.max(1, deadline - startTime);
+        double temperature = START_TEMPERATURE;
+        long moves = 0;
+        while (true) {
+            if (moves % CLOCK_INTERVAL == 0) {
+                long now = System.currentTimeMillis();
+                if (now >= deadline || districts < 2 || n < 2)
+                    break;
+                temperature = START_TEMPERATURE * Math.pow(END_TEMPERATURE / START_TEMPERATURE, (now - startTime) / budget);
+            }
+            moves++;
+
+            int i = random.nextInt(n);
+            int a = district[i];
+            if (random.nextBoolean() && size[a] > districtSize) {
+                // Move cell i to district b
+                int b = random.nextInt(districts - 1);
+                b += b >= a ? 1 : 0;
+                long sumA = sum[a] - margin[i];
+                long sumB = sum[b] + margin[i];
+                double delta = score(sumA) + score(sumB) - score(sum[a]) - score(sum[b]);
+                if (accept(delta, temperature, random)) {
+                    wins += win(sumA) + win(sumB) - win(sum[a]) - win(sum[b]);
+                    sum[a] = sumA;
+                    sum[b] = sumB;
+                    size[a]--;
+                    size[b]++;
+                    district[i] = b;
+                    score += delta;
+                } else {
+                    continue;
+                }
+            } else {
+                // Swap cells i and j of different districts
+                int j = random.nextInt(n);
+                int b = district[j];
+                if (a == b)
+                    continue;
+                long change = margin[j] - margin[i];
+                long sumA = sum[a] + change;
+                long sumB = sum[b] - change;
+                double delta = score(sumA) + score(sumB) - score(sum[a]) - score(sum[b]);
+                if (accept(delta, temperature, random)) {
+                    wins += win(sumA) + win(sumB) - win(sum[a]) - win(sum[b]);
+                    sum[a] = sumA;
+                    sum[b] = sumB;
+                    district[i] = b;
+                    district[j] = a;
+                    score += delta;
+                } else {
+                    continue;
+                }
+            }
+
+            if (wins > best.wins) {
+                System.arraycopy(district, 0, best.district, 0, n);
+                best.wins = wins;
+            }
+        }
+        best.moves = moves;
+        return best;
+    }
+
+    /**
+     * A won district counts 1, a lost district counts by how close it is to a win
+     */
+    private double score(long districtMargin) {
+        return districtMargin > 0 ? 1 : districtMargin / marginScale;
+    }
+
+    private static int win(long districtMargin) {
+        return districtMargin > 0 ? 1 : 0;
+    }
+
+    private static boolean accept(double delta, double temperature, SplittableRandom random) {
+        return delta >= 0 || random.nextDouble() < Math.exp(delta / temperature);
+    }
+
+    /**
+     * Best assignment of a search
+     */
+    public static class Result {
+        /**
+         * District of populated cell i
+         */
+        public final int[] district;
+        /**
+         * Wins of the optimized party
+         */
+        public int wins;
+        /**
+         * Upper bound on the wins of the optimized party
+         */
+        public int bound;
+        /**
+         * Number of evaluated moves of all starts
+         */
+        public long moves;
+        /**
+         * Seconds of wall-clock time
+         */
+        public double time;
+
+        Result(int[] district, int wins) {
+            this.district = district;
+            this.wins = wins;
+        }
+
+        /**
+         * Distance of the best assignment from the bound
+         */
+        public int gap() {
+            return bound - wins;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Writes instrumentation of elections as JSON lines, one object per event.
+ * Phase events hold the duration and the bytes allocated by the calling thread, progress events
+ * the incumbent, best bound, gap and node count of a running optimization, result events the
+ * outcome of an objective. The log may be shared by elections running in parallel.
+ */
+public class MetricsLog {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final PrintStream out;
+
+    public MetricsLog(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Log appending to a file
+     */
+    public MetricsLog(String filename) throws FileNotFoundException {
+        this(new PrintStream(new FileOutputStream(filename, true), true));
+    }
+
+    /**
+     * Start timing phase of the election on grid source
+     */
+    public Phase startPhase(String source, String phase) {
+        return new Phase(source, phase);
+    }
+
+    /**
+     * Sample of a running optimization, objective values are NaN if unknown
+     */
+    public void progress(String source, String objective, double time, double incumbent, double bound, long nodes) {
+        double gap = Double.isNaN(incumbent) || Double.isNaN(bound) ? Double.NaN
+                : Math.abs(bound - incumbent) / Math.max(1e-10, Math.abs(incumbent));
+        emit("{\"event\":\"progress\",\"source\":" + string(source) + ",\"objective\":" + string(objective)
+                + ",\"time\":" + number(time) + ",\"incumbent\":" + number(incumbent) + ",\"bound\":" + number(bound)
+                + ",\"gap\":" + number(gap) + ",\"nodes\":" + nodes + "}");
+    }
+
+    /**
+     * Outcome of one objective
+     */
+    public void result(String source, String objective, int status, int demVictoryCount, int repVictoryCount,
+                       int maxDiff, double solveTime, double firstSolutionTime) {
+        emit("{\"event\":\"result\",\"source\":" + string(source) + ",\"objective\":" + string(objective)
+                + ",\"status\":" + status + ",\"demWins\":" + demVictoryCount + ",\"repWins\":" + repVictoryCount
+                + ",\"maxDiff\":" + maxDiff + ",\"solveTime\":" + number(solveTime)
+                + ",\"firstSolutionTime\":" + number(firstSolutionTime) + "}");
+    }
+
+    /**
+     * State change of a queued job, message is null unless the job failed
+     */
+    public void job(String source, String state, String message) {
+        emit("{\"event\":\"job\",\"source\":" + string(source) + ",\"state\":" + string(state)
+                + ",\"message\":" + string(message) + "}");
+    }
+
+    private synchronized void emit(String line) {
+        out.println(line);
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, -1 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+
+    private static String string(String value) {
+        if (value == null)
+            return "null";
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Running phase, end it on the thread that started it
+     */
+    public class Phase {
+        private final String source;
+        private final String phase;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Phase(String source, String phase) {
+            this.source = source;
+            this.phase = phase;
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        public void end() {
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+            emit("{\"event\":\"phase\",\"source\":" + string(source) + ",\"phase\":" + string(phase)
+                    + ",\"seconds\":" + number(nanos / 1e9) + ",\"allocatedBytes\":" + bytes + "}");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Solver independent mixed integer model used by the districting formulation.
+ * Variables are referenced by the index returned from {@link #addVar}.
+ * Type, sense and status constants have the same values as the gurobi constants.
+ */
+public interface MipModel {
+
+    // Variable types
+    char CONTINUOUS = 'C';
+    char BINARY = 'B';
+    char INTEGER = 'I';
+
+    // Constraint senses
+    char LESS_EQUAL = '<';
+    char GREATER_EQUAL = '>';
+    char EQUAL = '=';
+
+    // Objective senses
+    int MINIMIZE = 1;
+    int MAXIMIZE = -1;
+
+    // Status after optimization
+    int LOADED = 1;
+    int OPTIMAL = 2;
+    int INFEASIBLE = 3;
+    int INF_OR_UNBD = 4;
+    int UNBOUNDED = 5;
+    int CUTOFF = 6;
+    int NODE_LIMIT = 8;
+    int TIME_LIMIT = 9;
+    int INTERRUPTED = 11;
+    int NUMERIC = 12;
+
+    /**
+     * Add variable and return its index
+     */
+    int addVar(double lb, double ub, double obj, char type, String name) throws Exception;
+
+    /**
+     * Add count variables with the same bounds and type and return the index of the first one,
+     * the others follow consecutively. Names may be null, the solver then chooses them.
+     */
+    int addVars(int count, double lb, double ub, char type, String[] names) throws Exception;
+
+    /**
+     * Add constraint expr sense rhs and return its index
+     */
+    int addConstr(LinearExpr expr, char sense, double rhs, String name) throws Exception;
+
+    /**
+     * Add count constraints given as compressed rows: row k has the terms coeffs[t] * vars[t] for
+     * t from start[k] to start[k+1] - 1. Returns the index of the first row, the others follow
+     * consecutively. Names may be null, the solver then chooses them.
+     */
+    int addConstrs(int count, int[] start, int[] vars, double[] coeffs, char[] sense, double[] rhs, String[] names)
+            throws Exception;
+
+    /**
+     * Add constraint expr sense rhs that is enforced only if binary variable binVar equals binVal
+     */
+    void addIndicator(int binVar, int binVal, LinearExpr expr, char sense, double rhs, String name) throws Exception;
+
+    /**
+     * Change the right hand side of constraint row, an infinite value relaxes the constraint
+     */
+    void setRhs(int row, double rhs) throws Exception;
+
+    /**
+     * Change the coefficient of variable var in constraint row, a missing term is added
+     */
+    void setCoefficient(int row, int var, double coeff) throws Exception;
+
+    /**
+     * Change the bounds of variable var
+     */
+    void setBounds(int var, double lb, double ub) throws Exception;
+
+    /**
+     * Set objective expr with sense MINIMIZE or MAXIMIZE
+     */
+    void setObjective(LinearExpr expr, int sense) throws Exception;
+
+    /**
+     * Value of variable var in the MIP start, variables without value are left to the solver
+     */
+    void setStart(int var, double value) throws Exception;
+
+    /**
+     * Select MIP start k for the following setStart calls, the solver begins from the best of all starts
+     */
+    void selectStart(int k) throws Exception;
+
+    /**
+     * Limit the number of threads used by optimize
+     */
+    void setThreads(int threads) throws Exception;
+
+    /**
+     * Stop optimize after seconds with status TIME_LIMIT, the best solution found so far stays
+     * available. An infinite value removes the limit.
+     */
+    void setTimeLimit(double seconds) throws Exception;
+
+    void optimize() throws Exception;
+
+    /**
+     * Optimize each objective independently over the same constraints. Status, values and first
+     * solution time of objective k are returned after selectObjective(k), objective 0 is selected.
+     */
+    void optimizeObjectives(LinearExpr[] objectives, int sense) throws Exception;
+
+    /**
+     * Select the objective of the last optimizeObjectives whose results are returned
+     */
+    void selectObjective(int k) throws Exception;
+
+    /**
+     * Status after optimization
+     */
+    int getStatus() throws Exception;
+
+    /**
+     * Seconds from the start of optimize until the first feasible solution was found, -1 if none
+     */
+    double getFirstSolutionTime() throws Exception;
+
+    /**
+     * Value of variable var in the best solution found
+     */
+    double getValue(int var) throws Exception;
+
+    /**
+     * Values of all variables in the best solution found, indexed like the variables
+     */
+    double[] getValues() throws Exception;
+
+    /**
+     * Write model to file, the format is given by the file extension, a .gz suffix compresses it
+     */
+    void write(String filename) throws Exception;
+
+    /**
+     * Replace the content of this empty model by the model in a file written by {@link #write}.
+     * Variables and constraints keep the indices they had in the written model.
+     */
+    void read(String filename) throws Exception;
+
+    /**
+     * Report the progress of optimize to listener, null stops reporting
+     */
+    void setProgressListener(ProgressListener listener) throws Exception;
+
+    /**
+     * Check every integer feasible solution of optimize with lazy, including MIP starts, null removes the check
+     */
+    void setLazyConstraints(LazyConstraints lazy) throws Exception;
+
+    /**
+     * Release all solver resources
+     */
+    void dispose() throws Exception;
+
+    /**
+     * Receives samples of a running optimization at most every INTERVAL seconds and on every
+     * new incumbent. Objective values are NaN while unknown.
+     */
+    interface ProgressListener {
+        double INTERVAL = 1.0;
+
+        void progress(double time, double incumbent, double bound, long nodes);
+    }
+
+    /**
+     * Constraints that are too many to add up front. They are separated from candidate solutions
+     * and only the violated ones are added, a candidate without added constraints is accepted.
+     */
+    interface LazyConstraints {
+        /**
+         * Add the constraints violated by candidate, the values of all variables, to cuts
+         */
+        void separate(double[] candidate, Cuts cuts) throws Exception;
+    }
+
+    /**
+     * Receives the constraints added by {@link LazyConstraints}
+     */
+    interface Cuts {
+        void add(LinearExpr expr, char sense, double rhs) throws Exception;
+    }
+}
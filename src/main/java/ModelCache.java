@@ -0,0 +1,89 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Directory of exported models keyed by a hash of the input files and the model parameters.
+ * An entry consists of the model file, the cells as binary grid and the layout with the indices
+ * of the variables and rows. The layout is written last, so an entry is complete once it exists.
+ */
+class ModelCache {
+
+    final File directory;
+
+    ModelCache(String directory) {
+        this.directory = new File(directory);
+    }
+
+    /**
+     * SHA-256 of the contents of the files and the parameters as hex string
+     */
+    static String key(List<File> files, String params) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (File file : files) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+            // Separate the files, so moving bytes from one file to the next changes the key
+            digest.update((byte) 0);
+        }
+        digest.update(params.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    File modelFile(String key, boolean compressed) {
+        return new File(directory, key + (compressed ? ".mps.gz" : ".mps"));
+    }
+
+    File gridFile(String key) {
+        return new File(directory, key + ".bin");
+    }
+
+    File layoutFile(String key) {
+        return new File(directory, key + ".layout");
+    }
+
+    /**
+     * Model file of the complete entry of key, null if there is none
+     */
+    File find(String key) {
+        if (!layoutFile(key).exists() || !gridFile(key).exists())
+            return null;
+        File compressed = modelFile(key, true);
+        if (compressed.exists())
+            return compressed;
+        File plain = modelFile(key, false);
+        return plain.exists() ? plain : null;
+    }
+
+    /**
+     * Write the layout of key, which completes the entry. The file is renamed into place, so a
+     * reader never sees a partial layout.
+     */
+    void writeLayout(String key, byte[] layout) throws IOException {
+        Files.createDirectories(directory.toPath());
+        File partial = new File(directory, key + ".layout.part");
+        Files.write(partial.toPath(), layout);
+        Files.move(partial.toPath(), layoutFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Export of the built model to an MPS file after winCount
+ */
+public enum ModelExport {
+    /**
+     * No file is written
+     */
+    OFF,
+    /**
+     * The file is written before winCount returns
+     */
+    SYNC,
+    /**
+     * The file is written on a background thread, winCount returns without waiting for the disk
+     */
+    ASYNC
+}
@@ -0,0 +1,546 @@
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Coarsen, solve and refine pipeline for grids too large for the flat model.
+ * The grid is coarsened into blocks of k x k cells whose votes and cell counts are summed. The
+ * much smaller districting of the blocks is solved and projected back to the cells, where the
+ * cells closest to a tie are moved until every district has districtSize cells.
+ * Refinement rounds then solve restricted models on the cells: cells near district boundaries and
+ * cells of split blocks are free, all other cells keep their district and only enter the model as
+ * constant votes and sizes of the districts. Each round starts from the current districting, so
+ * the wins never decrease.
+ */
+public class MultilevelDistricting {
+
+    public final CellIndex cells;
+    public final int districts;
+    public final int districtSize;
+    /**
+     * Maximize democrat wins if true, republican wins otherwise
+     */
+    public final boolean optimizeDemocrats;
+    /**
+     * Edge length k of the blocks, 0 picks the smallest k with at most maxBlocks blocks
+     */
+    public int blockSize = 0;
+    /**
+     * Largest number of populated blocks if the block size is picked automatically
+     */
+    public int maxBlocks = 200;
+    /**
+     * Cells up to this many steps from a district boundary are free in the refinement
+     */
+    public int radius = 1;
+    /**
+     * Maximal number of refinement rounds, refinement stops early once the wins do not increase
+     */
+    public int refineRounds = 3;
+    /**
+     * Seconds per model of a level, the best districting found within the limit is used
+     */
+    public double timeLimit = Double.POSITIVE_INFINITY;
+    /**
+     * Solver used for the coarse and the restricted models
+     */
+    public SolverBackend solver = SolverBackend.GUROBI;
+    /**
+     * Solver environment shared with other models, a new one is created per model if null
+     */
+    public SolverEnvironment environment;
+    /**
+     * Number of solver threads, 0 lets the solver decide
+     */
+    public int threads = 0;
+    /**
+     * Margin of the optimized party per cell
+     */
+    private final long[] margin;
+    /**
+     * Upper bound on the wins of the optimized party
+     */
+    private final int bound;
+
+    public MultilevelDistricting(CellIndex cells, int districts, int districtSize, boolean optimizeDemocrats) {
+        this.cells = cells;
+        this.districts = districts;
+        this.districtSize = districtSize;
+        this.optimizeDemocrats = optimizeDemocrats;
+        margin = new long[cells.count];
+        for (int i = 0; i < cells.count; i++) {
+            margin[i] = optimizeDemocrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+        }
+        bound = LocalSearchDistricting.bound(margin, districts, districtSize);
+    }
+
+    /**
+     * Usage: MultilevelDistricting democrats.in republicans.in|- districtSize dem|rep gurobi|java [blockSize]
+     * Use - as republican file for a binary grid.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5 && args.length != 6) {
+            System.err.println("Usage: MultilevelDistricting <democrats.in> <republicans.in|-> <districtSize> <dem|rep> <gurobi|java> [blockSize]");
+            System.exit(1);
+        }
+        File democratFile = new File(args[0]);
+        CellIndex cells = args[1].equals("-") ? VoteGridFile.read(democratFile)
+                : VoteGridReader.readCells(democratFile, new File(args[1]));
+        MultilevelDistricting multilevel = new MultilevelDistricting(cells, Election.B, Integer.parseInt(args[2]), args[3].equals("dem"));
+        multilevel.solver = args[4].equals("java") ? SolverBackend.JAVA : SolverBackend.GUROBI;
+        if (args.length == 6) {
+            multilevel.blockSize = Integer.parseInt(args[5]);
+        }
+        Result result = multilevel.solve();
+        if (result == null) {
+            System.out.println("Infeasible: not enough populated cells");
+            return;
+        }
+        System.out.println("Blocks: " + result.blockCount + " of " + result.blockSize + "x" + result.blockSize
+                + " cells, coarse units: " + result.unitCount + ", coarse wins: " + result.coarseWins);
+        System.out.println("Best wins: " + result.wins + ", bound: " + result.bound + " after " + result.rounds + " refinement rounds, free cells: "
+                + result.freeCells);
+        System.out.println("Coarse (s): " + result.coarseTime + ", refine (s): " + result.refineTime);
+    }
+
+    /**
+     * Coarse solution refined on the cells, null if there are fewer than districts * districtSize cells
+     */
+    public Result solve() throws Exception {
+        if (districtSize < 1 || cells.count < (long) districts * districtSize)
+            return null;
+
+        // Coarse level, blocks are halved until their districting is feasible
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        result.bound = bound;
+        int k = blockSize > 0 ? blockSize : autoBlockSize();
+        int[] blockOf;
+        int[] district;
+        long totalMargin = 0;
+        for (int i = 0; i < cells.count; i++) {
+            totalMargin += Math.abs(margin[i]);
+        }
+        while (true) {
+            blockOf = new int[cells.count];
+            int blockCount = blocks(k, blockOf);
+            long[] blockMargin = new long[blockCount];
+            for (int i = 0; i < cells.count; i++) {
+                blockMargin[blockOf[i]] += margin[i];
+            }
+
+            // A block with more margin than an average district decides every district it joins,
+            // e.g. a city center, so its cells stay separate units that can be spread over districts
+            int[] unitOf = new int[cells.count];
+            int[] blockUnit = new int[blockCount];
+            Arrays.fill(blockUnit, -1);
+            int unitCount = 0;
+            for (int i = 0; i < cells.count; i++) {
+                int block = blockOf[i];
+                if (Math.abs(blockMargin[block]) * districts > totalMargin) {
+                    unitOf[i] = unitCount++;
+                } else {
+                    if (blockUnit[block] < 0) {
+                        blockUnit[block] = unitCount++;
+                    }
+                    unitOf[i] = blockUnit[block];
+                }
+            }
+            long[] unitMargin = new long[unitCount];
+            int[] unitCells = new int[unitCount];
+            int largestUnit = 0;
+            for (int i = 0; i < cells.count; i++) {
+                unitMargin[unitOf[i]] += margin[i];
+                largestUnit = Math.max(largestUnit, ++unitCells[unitOf[i]]);
+            }
+
+            // Whole blocks rarely add up to the district size, so a district may miss half a block,
+            // the sizes are repaired on the cells
+            int slack = largestUnit / 2;
+            int[] unitDistrict = unitCount < districts ? null
+                    : assign(unitMargin, unitCells, new long[districts], new int[districts], slack,
+                    GreedyDistricting.assign(unitMargin, unitCells, districts, districtSize - slack));
+            if (unitDistrict != null) {
+                // Project the districting of the units to their cells
+                district = new int[cells.count];
+                for (int i = 0; i < cells.count; i++) {
+                    district[i] = unitDistrict[unitOf[i]];
+                }
+                result.blockCount = blockCount;
+                result.unitCount = unitCount;
+                break;
+            }
+            if (k == 1)
+                return null;
+            k = Math.max(1, k / 2);
+        }
+        result.district = district;
+        result.wins = wins(district);
+        result.blockSize = k;
+        result.coarseWins = result.wins;
+        result.coarseTime = (System.currentTimeMillis() - start) / 1000d;
+
+        // Fine level, restricted to free cells around the boundaries of the projected districting
+        start = System.currentTimeMillis();
+        int[] projected = district.clone();
+        repairSizes(district);
+        result.wins = wins(district);
+        int[] neighbour = cells.neighbours();
+        while (result.rounds < refineRounds && k > 1 && result.wins < bound) {
+            int[] free = freeCells(projected, district, blockOf, neighbour);
+            long[] freeMargin = new long[free.length];
+            int[] freeUnitCells = new int[free.length];
+            int[] freeDistrict = new int[free.length];
+            long[] fixedMargin = new long[districts];
+            int[] fixedSize = new int[districts];
+            for (int i = 0; i < cells.count; i++) {
+                fixedMargin[district[i]] += margin[i];
+                fixedSize[district[i]]++;
+            }
+            for (int f = 0; f < free.length; f++) {
+                int i = free[f];
+                freeMargin[f] = margin[i];
+                freeUnitCells[f] = 1;
+                freeDistrict[f] = district[i];
+                fixedMargin[district[i]] -= margin[i];
+                fixedSize[district[i]]--;
+            }
+
+            // The current districting is a feasible start, so the wins do not decrease
+            int[] assigned = assign(freeMargin, freeUnitCells, fixedMargin, fixedSize, 0, freeDistrict);
+            result.rounds++;
+            result.freeCells = free.length;
+            if (assigned == null)
+                break;
+            for (int f = 0; f < free.length; f++) {
+                district[free[f]] = assigned[f];
+            }
+            int wins = wins(district);
+            boolean improved = wins > result.wins;
+            result.wins = wins;
+            if (!improved)
+                break;
+        }
+        result.refineTime = (System.currentTimeMillis() - start) / 1000d;
+        return result;
+    }
+
+    /**
+     * Move the cells closest to a tie from districts with spare cells to districts below districtSize
+     */
+    private void repairSizes(int[] district) {
+        repairSizes(district, margin, districts, districtSize);
+    }
+
+    /**
+     * Move the cells closest to a tie from districts with spare cells to districts below districtSize,
+     * margin is the margin of the optimized party per cell
+     */
+    static void repairSizes(int[] district, long[] margin, int districts, int districtSize) {
+        int n = district.length;
+        int[] size = new int[districts];
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            size[district[i]]++;
+            // Absolute margin in the upper bits, index in the lower bits
+            keys[i] = (Math.min(Math.abs(margin[i]), Integer.MAX_VALUE) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int target = 0;
+        for (int p = 0; p < n; p++) {
+            while (target < districts && size[target] >= districtSize) {
+                target++;
+            }
+            if (target == districts)
+                break;
+            int i = (int) keys[p];
+            if (size[district[i]] > districtSize) {
+                size[district[i]]--;
+                district[i] = target;
+                size[target]++;
+            }
+        }
+    }
+
+    /**
+     * Smallest block size with at most maxBlocks populated blocks
+     */
+    private int autoBlockSize() {
+        int[] blockOf = new int[cells.count];
+        int k = 1;
+        while (blocks(k, blockOf) > maxBlocks && k < Math.max(cells.width, cells.height)) {
+            k *= 2;
+        }
+        return k;
+    }
+
+    /**
+     * Set the block of each cell for blocks of k x k cells and return the number of populated blocks
+     */
+    private int blocks(int k, int[] blockOf) {
+        // Cells are stored in row major order, so the blocks of one block row are complete before the next
+        int blockWidth = (cells.width + k - 1) / k;
+        int[] blockRow = new int[blockWidth];
+        int[] block = new int[blockWidth];
+        Arrays.fill(blockRow, -1);
+        int count = 0;
+        for (int i = 0; i < cells.count; i++) {
+            int bx = cells.x[i] / k;
+            int by = cells.y[i] / k;
+            if (blockRow[bx] != by) {
+                blockRow[bx] = by;
+                block[bx] = count++;
+            }
+            blockOf[i] = block[bx];
+        }
+        return count;
+    }
+
+    /**
+     * Cells within radius steps of a cell with a neighbour in another district of the projected
+     * districting and all cells of blocks split between districts. Districts need not be contiguous,
+     * so boundaries of refined districtings are scattered and only the projected ones are used.
+     */
+    private int[] freeCells(int[] projected, int[] district, int[] blockOf, int[] neighbour) {
+        int n = cells.count;
+        int blockCount = count(blockOf);
+        int[] blockDistrict = new int[blockCount];
+        boolean[] split = new boolean[blockCount];
+        Arrays.fill(blockDistrict, -1);
+        for (int i = 0; i < n; i++) {
+            int block = blockOf[i];
+            split[block] |= blockDistrict[block] >= 0 && blockDistrict[block] != district[i];
+            blockDistrict[block] = district[i];
+        }
+
+        // Breadth first search from the boundary cells
+        int[] distance = new int[n];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            boolean boundary = split[blockOf[i]];
+            for (int k = 4 * i; k < 4 * i + 4 && !boundary; k++) {
+                boundary = neighbour[k] >= 0 && projected[neighbour[k]] != projected[i];
+            }
+            if (boundary) {
+                distance[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int i = queue[head];
+            if (distance[i] + 1 >= radius)
+                continue;
+            for (int k = 4 * i; k < 4 * i + 4; k++) {
+                int j = neighbour[k];
+                if (j >= 0 && distance[j] < 0) {
+                    distance[j] = distance[i] + 1;
+                    queue[tail++] = j;
+                }
+            }
+        }
+        int[] free = Arrays.copyOf(queue, tail);
+        Arrays.sort(free);
+        return free;
+    }
+
+    /**
+     * Assign units with margin and cell count to the districts, which already hold fixed cells with
+     * the given margin and size. Districts may be up to slack cells smaller than districtSize.
+     * start is the district of each unit in a MIP start, null for none.
+     * Returns the district of each unit, null if the solver found no assignment.
+     */
+    private int[] assign(long[] unitMargin, int[] unitCells, long[] fixedMargin, int[] fixedSize, int slack,
+                         int[] start)
+            throws Exception {
+        int units = unitMargin.length;
+        MipModel model = environment != null ? environment.newModel() : solver.newModel();
+        try {
+            if (threads > 0) {
+                model.setThreads(threads);
+            }
+            model.setTimeLimit(timeLimit);
+
+            // V[b] = win for the optimized party in district b
+            int[] V = new int[districts];
+            for (int b = 0; b < districts; b++) {
+                V[b] = model.addVar(0.0, 1.0, 0.0, MipModel.BINARY, "V_" + b);
+            }
+
+            // C[u][b] = district of unit u
+            int[][] C = new int[units][districts];
+            LinearExpr[] marginExpr = new LinearExpr[districts];
+            LinearExpr[] sizeExpr = new LinearExpr[districts];
+            for (int b = 0; b < districts; b++) {
+                marginExpr[b] = new LinearExpr(units + 1);
+                sizeExpr[b] = new LinearExpr(units);
+            }
+            long negativeMargin = 0;
+            for (int u = 0; u < units; u++) {
+                for (int b = 0; b < districts; b++) {
+                    C[u][b] = model.addVar(0.0, 1.0, 0.0, MipModel.BINARY, "C_" + u + "_" + b);
+                    marginExpr[b].addTerm(unitMargin[u], C[u][b]);
+                    sizeExpr[b].addTerm(unitCells[u], C[u][b]);
+                }
+                negativeMargin += Math.min(0, unitMargin[u]);
+
+                // Each unit has to belong to exactly 1 district
+                LinearExpr unitExpr = new LinearExpr(districts);
+                unitExpr.addTerms(null, C[u]);
+                model.addConstr(unitExpr, MipModel.EQUAL, 1.0, "con_A_" + u);
+            }
+
+            boolean interchangeable = true;
+            for (int b = 0; b < districts; b++) {
+                // Each district has to hold at least districtSize cells
+                model.addConstr(sizeExpr[b], MipModel.GREATER_EQUAL, districtSize - slack - fixedSize[b], "con_B_" + b);
+                interchangeable &= fixedMargin[b] == 0 && fixedSize[b] == 0;
+            }
+            for (int b = 0; b < districts; b++) {
+                // A won district has margin at least 1: margin[b] + M * (1 - V[b]) >= 1
+                // M covers the lowest margin the district can reach
+                long m = Math.max(0, 1 - fixedMargin[b] - negativeMargin);
+                LinearExpr winExpr = new LinearExpr(units + 1);
+                winExpr.add(marginExpr[b]);
+                winExpr.addTerm(-m, V[b]);
+                model.addConstr(winExpr, MipModel.GREATER_EQUAL, 1 - m - fixedMargin[b], "con_V_" + b);
+
+                if (interchangeable && b + 1 < districts) {
+                    // Districts without fixed cells are interchangeable, so sort them by margin
+                    LinearExpr orderExpr = new LinearExpr(2 * units);
+                    orderExpr.add(marginExpr[b]);
+                    orderExpr.multAdd(-1, marginExpr[b + 1]);
+                    model.addConstr(orderExpr, MipModel.GREATER_EQUAL, 0, "con_S_" + b);
+                    LinearExpr winOrderExpr = new LinearExpr(2);
+                    winOrderExpr.addTerm(1, V[b]);
+                    winOrderExpr.addTerm(-1, V[b + 1]);
+                    model.addConstr(winOrderExpr, MipModel.GREATER_EQUAL, 0, "con_SV_" + b);
+                }
+            }
+
+            LinearExpr objective = new LinearExpr(districts);
+            objective.addTerms(null, V);
+            // The bound on the wins of the cells also holds for any restriction, it closes the gap once reached
+            model.addConstr(objective, MipModel.LESS_EQUAL, bound, "con_W");
+            model.setObjective(objective, MipModel.MAXIMIZE);
+
+            if (start != null) {
+                long[] startMargin = fixedMargin.clone();
+                for (int u = 0; u < units; u++) {
+                    startMargin[start[u]] += unitMargin[u];
+                }
+                // Label of each district of the start, sorted by margin if the districts are interchangeable
+                int[] label = new int[districts];
+                long[] keys = new long[districts];
+                for (int b = 0; b < districts; b++) {
+                    keys[b] = interchangeable ? -startMargin[b] : b;
+                }
+                Integer[] order = new Integer[districts];
+                for (int b = 0; b < districts; b++) {
+                    order[b] = b;
+                }
+                Arrays.sort(order, (a, c) -> Long.compare(keys[a], keys[c]));
+                for (int b = 0; b < districts; b++) {
+                    label[order[b]] = b;
+                    model.setStart(V[b], startMargin[order[b]] > 0 ? 1 : 0);
+                }
+                for (int u = 0; u < units; u++) {
+                    for (int b = 0; b < districts; b++) {
+                        model.setStart(C[u][b], b == label[start[u]] ? 1 : 0);
+                    }
+                }
+            }
+
+            model.optimize();
+            int status = model.getStatus();
+            if (status != MipModel.OPTIMAL && (status != MipModel.TIME_LIMIT || model.getFirstSolutionTime() < 0))
+                return null;
+            int[] district = new int[units];
+            double[] values = model.getValues();
+            for (int u = 0; u < units; u++) {
+                for (int b = 0; b < districts; b++) {
+                    if (values[C[u][b]] > 0.5) {
+                        district[u] = b;
+                    }
+                }
+            }
+            return district;
+        } finally {
+            model.dispose();
+        }
+    }
+
+    /**
+     * Number of districts won by the optimized party
+     */
+    private int wins(int[] district) {
+        long[] sum = new long[districts];
+        for (int i = 0; i < cells.count; i++) {
+            sum[district[i]] += margin[i];
+        }
+        int wins = 0;
+        for (int b = 0; b < districts; b++) {
+            wins += sum[b] > 0 ? 1 : 0;
+        }
+        return wins;
+    }
+
+    private static int count(int[] blockOf) {
+        int count = 0;
+        for (int block : blockOf) {
+            count = Math.max(count, block + 1);
+        }
+        return count;
+    }
+
+    /**
+     * Districting of the pipeline with the sizes of its levels
+     */
+    public static class Result {
+        /**
+         * District of populated cell i
+         */
+        public int[] district;
+        /**
+         * Wins of the optimized party
+         */
+        public int wins;
+        /**
+         * Upper bound on the wins of the optimized party
+         */
+        public int bound;
+        /**
+         * Wins of the coarse districting projected to the cells
+         */
+        public int coarseWins;
+        /**
+         * Edge length of the blocks of the coarse level
+         */
+        public int blockSize;
+        /**
+         * Number of populated blocks
+         */
+        public int blockCount;
+        /**
+         * Number of units of the coarse level, blocks and the cells of blocks kept apart
+         */
+        public int unitCount;
+        /**
+         * Number of refinement rounds solved
+         */
+        public int rounds;
+        /**
+         * Free cells of the last refinement round
+         */
+        public int freeCells;
+        /**
+         * Seconds to coarsen and solve the coarse level
+         */
+        public double coarseTime;
+        /**
+         * Seconds of all refinement rounds
+         */
+        public double refineTime;
+
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wins of the optimized party over a range of district counts and minimal district sizes.
+ * The grid is read once and the points are solved in order, district counts ascending and sizes
+ * ascending within each count. Every point reuses what the points before it proved:
+ * <ul>
+ * <li>A point with more districts or larger districts than an infeasible one is infeasible.</li>
+ * <li>Larger districts only remove districtings, so the wins of the next smaller size bound the wins.
+ * Merging two districts loses at most one win, so the wins with one district less plus one do too.</li>
+ * <li>The optimum of the previous point, repaired to the new district size, is the MIP start. If it
+ * or the greedy districting reaches the bound, it is optimal and the point is not solved.</li>
+ * </ul>
+ * Points that are solved get the bound as row, which prunes the search of the solver.
+ */
+public class ParametricSweep {
+
+    public final String FILE_DEMOCRATS;
+    public final String FILE_REPUBLICANS;
+    /**
+     * Maximize democrat wins if true, republican wins otherwise
+     */
+    public final boolean optimizeDemocrats;
+    /**
+     * Reuse starts and bounds of the previous points, every point is solved cold if false
+     */
+    public boolean reuse = true;
+    /**
+     * Solver used for the points
+     */
+    public SolverBackend solver = SolverBackend.GUROBI;
+    /**
+     * Metrics of the solved points, the summary of every point is printed if null
+     */
+    public MetricsLog metrics;
+
+    // Results
+    /**
+     * Points of the last sweep in solve order
+     */
+    public final List<Point> points = new ArrayList<>();
+    /**
+     * Points of the last sweep the solver was run on
+     */
+    public int solveCount;
+    /**
+     * Seconds of the last sweep
+     */
+    public double time;
+
+    public ParametricSweep(String filenameDemocrats, String filenameRepublicans, boolean optimizeDemocrats) {
+        FILE_DEMOCRATS = filenameDemocrats;
+        FILE_REPUBLICANS = filenameRepublicans;
+        this.optimizeDemocrats = optimizeDemocrats;
+    }
+
+    /**
+     * Usage: ParametricSweep democrats.in republicans.in|- dem|rep gurobi|java minDistricts maxDistricts minSize maxSize
+     * Use - as republican file for a binary grid.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 8) {
+            System.err.println("Usage: ParametricSweep <democrats.in> <republicans.in|-> <dem|rep> <gurobi|java> "
+                    + "<minDistricts> <maxDistricts> <minSize> <maxSize>");
+            System.exit(1);
+        }
+        ParametricSweep sweep = new ParametricSweep(args[0], args[1].equals("-") ? null : args[1], args[2].equals("dem"));
+        sweep.solver = args[3].equals("java") ? SolverBackend.JAVA : SolverBackend.GUROBI;
+        sweep.metrics = new MetricsLog(System.err);
+        sweep.run(Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]), Integer.parseInt(args[7]));
+        sweep.printTable(System.out);
+    }
+
+    /**
+     * Solve all points with minDistricts to maxDistricts districts of minSize to maxSize cells
+     */
+    public List<Point> run(int minDistricts, int maxDistricts, int minSize, int maxSize) throws Exception {
+        if (minDistricts < 1 || minSize < 1)
+            throw new IllegalArgumentException("Districts and district size must be positive");
+        long start = System.currentTimeMillis();
+        points.clear();
+        solveCount = 0;
+
+        // Grid is read once with the resource lookup of the elections
+        CellIndex cells = new Election(FILE_DEMOCRATS, FILE_REPUBLICANS, minSize).readCells();
+        long[] margin = new long[cells.count];
+        for (int i = 0; i < cells.count; i++) {
+            margin[i] = optimizeDemocrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+        }
+
+        try (SolverEnvironment environment = solver.newEnvironment()) {
+            // Points of the previous district count by size
+            Point[] fewer = null;
+            for (int districts = minDistricts; districts <= maxDistricts; districts++) {
+                Point[] row = new Point[maxSize - minSize + 1];
+                for (int size = minSize; size <= maxSize; size++) {
+                    Point smaller = size > minSize ? row[size - minSize - 1] : null;
+                    Point point = new Point(districts, size);
+                    if (!reuse || !reuse(point, smaller, fewer != null ? fewer[size - minSize] : null, cells, margin)) {
+                        solve(point, cells, environment);
+                    }
+                    row[size - minSize] = point;
+                    points.add(point);
+                }
+                fewer = row;
+            }
+        }
+        time = (System.currentTimeMillis() - start) / 1000d;
+        return points;
+    }
+
+    /**
+     * Print one line per point: districts, size, status, wins, seconds and whether it was solved
+     */
+    public void printTable(PrintStream out) {
+        out.println(String.format("%9s %6s %6s %5s %9s %s", "districts", "size", "status", "wins", "seconds", "solved"));
+        for (Point point : points) {
+            out.println(String.format("%9d %6d %6d %5d %9.3f %s", point.districts, point.districtSize, point.status,
+                    point.wins, point.time, point.solved ? "yes"
+                    : point.status == MipModel.INFEASIBLE ? "no, too few cells" : "no, bound " + point.bound));
+        }
+        out.println("Solved " + solveCount + " of " + points.size() + " points in " + time + " s");
+    }
+
+    /**
+     * Bound, start and, if they decide it, the result of the point from its predecessors, true if decided.
+     * smaller has the same districts with one cell less each, fewer the same size with one district less.
+     */
+    private boolean reuse(Point point, Point smaller, Point fewer, CellIndex cells, long[] margin) {
+        long start = System.nanoTime();
+        if ((long) point.districts * point.districtSize > cells.count
+                || smaller != null && smaller.status == MipModel.INFEASIBLE
+                || fewer != null && fewer.status == MipModel.INFEASIBLE) {
+            // Too few cells for the districts
+            point.status = MipModel.INFEASIBLE;
+            point.time = (System.nanoTime() - start) / 1e9;
+            return true;
+        }
+
+        point.bound = Math.min(point.districts, LocalSearchDistricting.bound(margin, point.districts, point.districtSize));
+        if (smaller != null && smaller.status == MipModel.OPTIMAL) {
+            point.bound = Math.min(point.bound, smaller.wins);
+        }
+        if (fewer != null && fewer.status == MipModel.OPTIMAL) {
+            point.bound = Math.min(point.bound, fewer.wins + 1);
+        }
+
+        // Optimum of the closest point with the sizes repaired, districts added by the repair start empty
+        Point previous = smaller != null && smaller.district != null ? smaller : fewer;
+        if (previous != null && previous.district != null) {
+            int[] adapted = previous.district.clone();
+            MultilevelDistricting.repairSizes(adapted, margin, point.districts, point.districtSize);
+            point.start = adapted;
+        }
+        int[] greedy = GreedyDistricting.assign(cells, point.districts, point.districtSize, optimizeDemocrats);
+        if (greedy != null && (point.start == null || wins(greedy, margin, point.districts) > wins(point.start, margin, point.districts))) {
+            point.start = greedy;
+        }
+
+        boolean optimal = point.start != null && wins(point.start, margin, point.districts) >= point.bound;
+        if (optimal) {
+            // Start reaches the bound
+            point.status = MipModel.OPTIMAL;
+            point.wins = point.bound;
+            point.district = point.start;
+        }
+        point.time = (System.nanoTime() - start) / 1e9;
+        return optimal;
+    }
+
+    private void solve(Point point, CellIndex cells, SolverEnvironment environment) throws Exception {
+        long start = System.nanoTime();
+        Election election = new Election(FILE_DEMOCRATS, FILE_REPUBLICANS, point.districtSize);
+        election.districts = point.districts;
+        election.cells = cells;
+        election.solver = solver;
+        election.environment = environment;
+        election.export = ModelExport.OFF;
+        election.metrics = metrics;
+        election.mipStart = point.start;
+        if (point.bound < point.districts) {
+            election.winBound = point.bound;
+        }
+        election.winCount(optimizeDemocrats, !optimizeDemocrats, optimizeDemocrats);
+
+        point.status = election.status;
+        point.wins = optimizeDemocrats ? election.demVictoryCount : election.repVictoryCount;
+        point.district = election.district;
+        point.solved = true;
+        point.time += (System.nanoTime() - start) / 1e9;
+        solveCount++;
+    }
+
+    /**
+     * Districts of the districting won by the optimized party
+     */
+    private static int wins(int[] district, long[] margin, int districts) {
+        long[] sum = new long[districts];
+        for (int i = 0; i < district.length; i++) {
+            sum[district[i]] += margin[i];
+        }
+        int wins = 0;
+        for (int b = 0; b < districts; b++) {
+            if (sum[b] > 0) {
+                wins++;
+            }
+        }
+        return wins;
+    }
+
+    /**
+     * Result of one district count and district size
+     */
+    public static class Point {
+        public final int districts;
+        public final int districtSize;
+        /**
+         * Solver status, OPTIMAL or INFEASIBLE also if the point was decided without the solver
+         */
+        public int status;
+        /**
+         * Wins of the optimized party
+         */
+        public int wins;
+        /**
+         * Upper bound on the wins known before the point was solved
+         */
+        public int bound;
+        /**
+         * Point was passed to the solver
+         */
+        public boolean solved;
+        /**
+         * Seconds to decide the point
+         */
+        public double time;
+        /**
+         * District of populated cell i, null without a solution
+         */
+        public int[] district;
+        // MIP start of the solver
+        private int[] start;
+
+        Point(int districts, int districtSize) {
+            this.districts = districts;
+            this.districtSize = districtSize;
+            bound = districts;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Feasibility and bounds on the wins of the optimized party from the votes alone, before a model
+ * is built. There have to be at least districts * districtSize cells. The strongest cells packed
+ * into winning districts bound the wins from above, the greedy districting from below. If the
+ * bounds meet, the greedy districting is optimal. Contiguous districts are only checked for
+ * feasibility of the sizes and bounded from above, the greedy districting need not be connected.
+ */
+class Presolve {
+
+    /**
+     * Enough cells for the districts, otherwise the election is infeasible
+     */
+    final boolean feasible;
+    /**
+     * Upper bound on the wins of the optimized party
+     */
+    final int upper;
+    /**
+     * Wins of district, -1 without districting
+     */
+    final int lower;
+    /**
+     * Greedy districting with lower wins, null if there is none
+     */
+    final int[] district;
+
+    Presolve(CellIndex cells, int districts, int districtSize, boolean optimizeDemocrats, boolean contiguous) {
+        int n = cells.count;
+        feasible = (long) districts * Math.max(0, districtSize) <= n;
+        if (!feasible) {
+            upper = 0;
+            lower = -1;
+            district = null;
+            return;
+        }
+
+        // Margin of the optimized party
+        long[] margin = new long[n];
+        for (int i = 0; i < n; i++) {
+            margin[i] = optimizeDemocrats ? (long) cells.d[i] - cells.r[i] : (long) cells.r[i] - cells.d[i];
+        }
+        // A won district has at least one cell
+        upper = Math.min(districts, LocalSearchDistricting.bound(margin, districts, Math.max(1, districtSize)));
+
+        district = contiguous ? null : GreedyDistricting.assign(cells, districts, districtSize, optimizeDemocrats);
+        if (district == null) {
+            lower = -1;
+            return;
+        }
+        long[] sum = new long[districts];
+        for (int i = 0; i < n; i++) {
+            sum[district[i]] += margin[i];
+        }
+        int wins = 0;
+        for (int b = 0; b < districts; b++) {
+            if (sum[b] > 0) {
+                wins++;
+            }
+        }
+        lower = wins;
+    }
+
+    /**
+     * Outcome is known without the solver: infeasible or the greedy districting reaches the upper bound
+     */
+    boolean decided() {
+        return !feasible || lower >= upper;
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persistent cache of election results keyed by a hash of the grid files and the model parameters.
+ * Each entry is one file holding status, win counts, the district of every cell and the solve
+ * statistics. The modification time of an entry is its last use, the least recently used entries
+ * are deleted once all entries together exceed maxBytes. A cache may be shared by several threads.
+ */
+public class ResultCache {
+
+    /**
+     * "RSLT" in ASCII
+     */
+    private static final int MAGIC = 0x52534c54;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".result";
+
+    /**
+     * Directory of the entries
+     */
+    public final File directory;
+    /**
+     * Upper bound of the total size of all entries
+     */
+    public final long maxBytes;
+
+    // Results
+    /**
+     * Number of lookups that found an entry
+     */
+    public int hitCount;
+    /**
+     * Number of lookups without entry
+     */
+    public int missCount;
+
+    // Last use stamp given to an entry, stamps are increasing even within one millisecond
+    private long lastStamp;
+
+    public ResultCache(String directory, long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Cache size must not be negative");
+        this.directory = new File(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Result of key, null if there is no entry. The entry becomes the most recently used one.
+     */
+    synchronized Result get(String key) throws IOException {
+        File file = file(key);
+        if (!file.exists()) {
+            missCount++;
+            return null;
+        }
+        Result result = new Result();
+        try (InputStream bytes = Files.newInputStream(file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // Entry of another version is a miss and gets replaced
+                missCount++;
+                return null;
+            }
+            result.status = in.readInt();
+            result.demVictoryCount = in.readInt();
+            result.repVictoryCount = in.readInt();
+            result.firstSolutionTime = in.readDouble();
+            result.buildTime = in.readDouble();
+            result.solveTime = in.readDouble();
+            int count = in.readInt();
+            if (count >= 0) {
+                result.district = new int[count];
+                for (int i = 0; i < count; i++) {
+                    result.district[i] = in.readInt();
+                }
+            }
+        }
+        file.setLastModified(stamp());
+        hitCount++;
+        return result;
+    }
+
+    /**
+     * Store result under key and evict the least recently used entries beyond maxBytes
+     */
+    synchronized void put(String key, Result result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(result.status);
+            out.writeInt(result.demVictoryCount);
+            out.writeInt(result.repVictoryCount);
+            out.writeDouble(result.firstSolutionTime);
+            out.writeDouble(result.buildTime);
+            out.writeDouble(result.solveTime);
+            out.writeInt(result.district != null ? result.district.length : -1);
+            for (int i = 0; result.district != null && i < result.district.length; i++) {
+                out.writeInt(result.district[i]);
+            }
+        }
+
+        // Written next to the entry and renamed, so a reader never sees a partial entry
+        Files.createDirectories(directory.toPath());
+        File partial = new File(directory, key + SUFFIX + ".part");
+        Files.write(partial.toPath(), bytes.toByteArray());
+        Files.move(partial.toPath(), file(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        file(key).setLastModified(stamp());
+        evict();
+    }
+
+    /**
+     * Delete the least recently used entries until all entries fit into maxBytes
+     */
+    private void evict() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (entries == null)
+            return;
+        long total = 0;
+        for (File entry : entries) {
+            total += entry.length();
+        }
+        if (total <= maxBytes)
+            return;
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int k = 0; k < entries.length && total > maxBytes; k++) {
+            long length = entries[k].length();
+            if (entries[k].delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File file(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private long stamp() {
+        lastStamp = Math.max(System.currentTimeMillis(), lastStamp + 1);
+        return lastStamp;
+    }
+
+    /**
+     * Results of one election run
+     */
+    static class Result {
+        int status;
+        int demVictoryCount;
+        int repVictoryCount;
+        double firstSolutionTime;
+        double buildTime;
+        double solveTime;
+        int[] district;
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Runs winCount on synthetic square grids of growing size and writes one CSV line per size with
+ * populated cells, build time, solve time, solver status, wins and peak heap usage.
+ * The district size is the largest that still fits B districts, M exceeds every vote margin.
+ */
+public class ScalingExperiment {
+
+    /**
+     * Usage: ScalingExperiment gurobi|java seed results.csv size...
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: ScalingExperiment <gurobi|java> <seed> <results.csv> <size>...");
+            System.exit(1);
+        }
+        SolverBackend solver = args[0].equals("java") ? SolverBackend.JAVA : SolverBackend.GUROBI;
+        long seed = Long.parseLong(args[1]);
+
+        try (PrintWriter results = new PrintWriter(new FileWriter(args[2]))) {
+            results.println("size,cells,buildTime,solveTime,status,demWins,repWins,peakHeapMB");
+            for (int k = 3; k < args.length; k++) {
+                run(solver, seed, Integer.parseInt(args[k]), results);
+            }
+        }
+    }
+
+    private static void run(SolverBackend solver, long seed, int size, PrintWriter results) throws Exception {
+        CellIndex cells = new VoteGridGenerator(size, size, seed).generate();
+        File democratFile = File.createTempFile("dem_" + size + "_", ".in");
+        File republicanFile = File.createTempFile("rep_" + size + "_", ".in");
+        try {
+            VoteGridGenerator.writeText(cells, democratFile, republicanFile);
+            long votes = 0;
+            for (int i = 0; i < cells.count; i++) {
+                votes += cells.d[i] + cells.r[i];
+            }
+            if (votes >= Integer.MAX_VALUE) {
+                System.err.println("Warning: " + votes + " votes exceed the largest M");
+            }
+            int districtSize = Math.max(1, cells.count / Election.B);
+            Election election = new Election(democratFile.getPath(), republicanFile.getPath(), districtSize,
+                    (int) Math.min(Integer.MAX_VALUE, votes + 1));
+            election.solver = solver;
+            election.warmStart = true;
+            // Build and solver are measured, also for grids presolve decides
+            election.presolve = false;
+
+            resetPeakHeap();
+            election.winCount(true, true, true);
+            results.println(size + "," + election.cells.count + "," + election.buildTime + "," + election.solveTime
+                    + "," + election.status + "," + election.demVictoryCount + "," + election.repVictoryCount
+                    + "," + peakHeap() / (1 << 20));
+            results.flush();
+        } finally {
+            democratFile.delete();
+            republicanFile.delete();
+        }
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Sum of the peak usage of all heap pools since the last reset
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
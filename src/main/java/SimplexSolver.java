@@ -0,0 +1,696 @@
+/**
+ * Bounded revised simplex used as LP relaxation in {@link BranchAndBoundModel}.
+ * Solves min cost * x subject to rowLower <= A x <= rowUpper and lower <= x <= upper,
+ * where A is given as sparse columns. Row i gets a logical variable n + i with column -e_i,
+ * so every basis has m columns and stays a valid start after bound changes. Phase 1
+ * minimizes the sum of bound violations of the basic variables. The basis inverse is kept in
+ * product form: the inverse -I of the logical basis followed by one sparse eta column per pivot
+ * since the last refactorization, so its memory grows with the nonzeros of the pivot columns
+ * instead of m * m.
+ */
+class SimplexSolver {
+
+    /**
+     * Tolerance for bound violations
+     */
+    private static final double PRIMAL_TOL = 1e-7;
+    /**
+     * Tolerance for reduced costs
+     */
+    private static final double DUAL_TOL = 1e-9;
+    /**
+     * Smallest accepted pivot element
+     */
+    private static final double PIVOT_TOL = 1e-9;
+    /**
+     * Pivots between two refactorizations of the basis inverse
+     */
+    private static final int REFACTOR_INTERVAL = 200;
+    /**
+     * Degenerate pivots before switching to the smallest index rule
+     */
+    private static final int DEGENERATE_LIMIT = 50;
+
+    // Problem
+    final int m;
+    final int n;
+    private final int[] colStart;
+    private final int[] rowIndex;
+    private final double[] value;
+    /**
+     * Cost of each variable, 0 for logical variables
+     */
+    final double[] cost;
+    /**
+     * Bounds of structural and logical variables
+     */
+    final double[] lower;
+    final double[] upper;
+
+    // Basis
+    /**
+     * Value of each variable
+     */
+    final double[] x;
+    /**
+     * Basic variable at each basis position
+     */
+    private final int[] head;
+    /**
+     * Basis position of each variable, -1 if nonbasic
+     */
+    private final int[] position;
+    // Eta file, eta k replaces column etaRow[k] of the identity by the pivot column: pivot element
+    // etaPivot[k] and the other nonzeros etaIndex/etaValue from etaStart[k] to etaStart[k + 1]
+    private int etaCount;
+    private int[] etaRow = new int[64];
+    private double[] etaPivot = new double[64];
+    private int[] etaStart = new int[65];
+    private int[] etaIndex = new int[1024];
+    private double[] etaValue = new double[1024];
+    private int pivotsSinceRefactor;
+    private boolean primalValid;
+
+    // Devex pricing weights
+    private final double[] primalWeight;
+    private final double[] dualWeight;
+
+    // Work arrays
+    private final double[] alpha;
+    private final double[] y;
+    private final double[] basicCost;
+
+    /**
+     * Total number of simplex iterations
+     */
+    long iterations;
+
+    SimplexSolver(int m, int n, int[] colStart, int[] rowIndex, double[] value, double[] cost,
+                  double[] lower, double[] upper, double[] rowLower, double[] rowUpper) {
+        this.m = m;
+        this.n = n;
+        this.colStart = colStart;
+        this.rowIndex = rowIndex;
+        this.value = value;
+        this.cost = new double[n + m];
+        this.lower = new double[n + m];
+        this.upper = new double[n + m];
+        System.arraycopy(cost, 0, this.cost, 0, n);
+        System.arraycopy(lower, 0, this.lower, 0, n);
+        System.arraycopy(upper, 0, this.upper, 0, n);
+        System.arraycopy(rowLower, 0, this.lower, n, m);
+        System.arraycopy(rowUpper, 0, this.upper, n, m);
+
+        x = new double[n + m];
+        head = new int[m];
+        position = new int[n + m];
+        alpha = new double[m];
+        y = new double[m];
+        basicCost = new double[m];
+        primalWeight = new double[n + m];
+        dualWeight = new double[m];
+        java.util.Arrays.fill(primalWeight, 1);
+        java.util.Arrays.fill(dualWeight, 1);
+
+        // Start with all logical variables basic
+        for (int j = 0; j < n; j++) {
+            position[j] = -1;
+            x[j] = boundValue(j, false);
+        }
+        for (int i = 0; i < m; i++) {
+            head[i] = n + i;
+            position[n + i] = i;
+        }
+    }
+
+    /**
+     * Change bounds of variable j, a nonbasic variable stays at the same side
+     */
+    void setBounds(int j, double lo, double hi) {
+        if (lower[j] == lo && upper[j] == hi)
+            return;
+        boolean atUpper = position[j] < 0 && x[j] == upper[j] && x[j] != lower[j];
+        lower[j] = lo;
+        upper[j] = hi;
+        if (position[j] < 0) {
+            x[j] = boundValue(j, atUpper);
+            primalValid = false;
+        }
+    }
+
+    /**
+     * Objective value of the current solution
+     */
+    double objective() {
+        double obj = 0;
+        for (int j = 0; j < n; j++) {
+            obj += cost[j] * x[j];
+        }
+        return obj;
+    }
+
+    /**
+     * Run simplex from the current basis. Dual simplex is used if the basis can be made dual
+     * feasible by moving nonbasic variables to their other bound, primal simplex otherwise.
+     *
+     * @param cutoff stop with CUTOFF as soon as the objective is proven to exceed this value
+     * @return OPTIMAL, INFEASIBLE, UNBOUNDED, CUTOFF or NUMERIC if the iteration limit is reached
+     */
+    int solve(long maxIterations, double cutoff) {
+        if (!primalValid) {
+            computePrimal();
+        }
+        if (makeDualFeasible()) {
+            int status = dual(maxIterations, cutoff);
+            if (status != MipModel.OPTIMAL)
+                return status;
+        }
+        return primal(maxIterations);
+    }
+
+    /**
+     * Move nonbasic variables with wrong reduced cost sign to their other bound
+     *
+     * @return false if the basis can not be made dual feasible
+     */
+    private boolean makeDualFeasible() {
+        for (int p = 0; p < m; p++) {
+            basicCost[p] = cost[head[p]];
+        }
+        computeDuals();
+        boolean flipped = false;
+        for (int j = 0; j < n + m; j++) {
+            if (position[j] >= 0 || lower[j] == upper[j])
+                continue;
+            double d = reducedCost(j, false);
+            if (d < -DUAL_TOL && x[j] < upper[j]) {
+                if (upper[j] == Double.POSITIVE_INFINITY || x[j] != lower[j])
+                    return false;
+                x[j] = upper[j];
+                flipped = true;
+            } else if (d > DUAL_TOL && x[j] > lower[j]) {
+                if (lower[j] == Double.NEGATIVE_INFINITY || x[j] != upper[j])
+                    return false;
+                x[j] = lower[j];
+                flipped = true;
+            }
+        }
+        if (flipped) {
+            computePrimal();
+        }
+        return true;
+    }
+
+    /**
+     * Dual simplex from a dual feasible basis, the leaving variable is the one with the largest
+     * bound violation
+     */
+    private int dual(long maxIterations, double cutoff) {
+        double[] rho = new double[m];
+        for (long iter = 0; iter < maxIterations; iter++) {
+            if (pivotsSinceRefactor >= REFACTOR_INTERVAL) {
+                refactor();
+                computePrimal();
+                if (!makeDualFeasible())
+                    return primal(maxIterations);
+            }
+
+            // Leaving variable
+            int r = -1;
+            double best = 0;
+            for (int p = 0; p < m; p++) {
+                int j = head[p];
+                double violation = Math.max(lower[j] - x[j], x[j] - upper[j]);
+                if (violation > PRIMAL_TOL && violation * violation / dualWeight[p] > best) {
+                    best = violation * violation / dualWeight[p];
+                    r = p;
+                }
+            }
+            if (r < 0) {
+                return MipModel.OPTIMAL;
+            }
+            // Objective of a dual feasible basis is a lower bound
+            if (objective() > cutoff) {
+                return MipModel.CUTOFF;
+            }
+            iterations++;
+            int leaving = head[r];
+            boolean increase = x[leaving] < lower[leaving];
+
+            for (int p = 0; p < m; p++) {
+                basicCost[p] = cost[head[p]];
+            }
+            computeDuals();
+            row(r, rho);
+
+            // Ratio test in two passes, the second pass picks the largest pivot
+            double thetaMax = Double.POSITIVE_INFINITY;
+            for (int pass = 0; pass < 2; pass++) {
+                int q = -1;
+                double maxPivot = 0;
+                for (int j = 0; j < n + m; j++) {
+                    if (position[j] >= 0 || lower[j] == upper[j])
+                        continue;
+                    double a = rowAlpha(j, rho);
+                    if (Math.abs(a) <= PIVOT_TOL)
+                        continue;
+                    // x[leaving] changes by -a per unit increase of x[j]
+                    boolean atLower = x[j] == lower[j];
+                    boolean atUpper = x[j] == upper[j];
+                    boolean up = increase ? a < 0 : a > 0;
+                    if (up ? atUpper : atLower)
+                        continue;
+                    double d = Math.abs(reducedCost(j, false));
+                    if (pass == 0) {
+                        thetaMax = Math.min(thetaMax, (d + DUAL_TOL) / Math.abs(a));
+                    } else if (d / Math.abs(a) <= thetaMax && Math.abs(a) > maxPivot) {
+                        maxPivot = Math.abs(a);
+                        q = j;
+                    }
+                }
+                if (pass == 0 && thetaMax == Double.POSITIVE_INFINITY) {
+                    return MipModel.INFEASIBLE;
+                }
+                if (pass == 1) {
+                    // Primal step moves the leaving variable to its violated bound
+                    column(q);
+                    double bound = increase ? lower[leaving] : upper[leaving];
+                    double step = (x[leaving] - bound) / alpha[r];
+                    for (int p = 0; p < m; p++) {
+                        if (alpha[p] != 0) {
+                            x[head[p]] -= alpha[p] * step;
+                        }
+                    }
+                    x[q] += step;
+                    x[leaving] = bound;
+
+                    // Update devex weights
+                    double weightR = dualWeight[r];
+                    for (int p = 0; p < m; p++) {
+                        if (p != r && alpha[p] != 0) {
+                            double ratio = alpha[p] / alpha[r];
+                            dualWeight[p] = Math.max(dualWeight[p], ratio * ratio * weightR);
+                        }
+                    }
+                    dualWeight[r] = Math.max(weightR / (alpha[r] * alpha[r]), 1);
+                    pivot(r);
+                    head[r] = q;
+                    position[q] = r;
+                    position[leaving] = -1;
+                }
+            }
+        }
+        return MipModel.NUMERIC;
+    }
+
+    /**
+     * Entry of row rho * Binv of nonbasic column j
+     */
+    private double rowAlpha(int j, double[] rho) {
+        if (j >= n) {
+            return -rho[j - n];
+        }
+        double a = 0;
+        for (int k = colStart[j]; k < colStart[j + 1]; k++) {
+            a += value[k] * rho[rowIndex[k]];
+        }
+        return a;
+    }
+
+    /**
+     * Primal simplex, phase 1 minimizes the sum of bound violations
+     */
+    private int primal(long maxIterations) {
+        int degenerate = 0;
+        double[] rho = new double[m];
+        for (long iter = 0; iter < maxIterations; iter++) {
+            if (pivotsSinceRefactor >= REFACTOR_INTERVAL) {
+                refactor();
+                computePrimal();
+            }
+
+            // Phase 1 if a basic variable violates its bounds
+            boolean phase1 = false;
+            for (int p = 0; p < m; p++) {
+                int j = head[p];
+                if (x[j] < lower[j] - PRIMAL_TOL) {
+                    basicCost[p] = -1;
+                    phase1 = true;
+                } else if (x[j] > upper[j] + PRIMAL_TOL) {
+                    basicCost[p] = 1;
+                    phase1 = true;
+                } else {
+                    basicCost[p] = 0;
+                }
+            }
+            if (!phase1) {
+                for (int p = 0; p < m; p++) {
+                    basicCost[p] = cost[head[p]];
+                }
+            }
+            computeDuals();
+
+            // Pricing
+            boolean bland = degenerate > DEGENERATE_LIMIT;
+            int q = -1;
+            int dir = 0;
+            double best = 0;
+            // Improving column whose score vanished by overflowing weights
+            boolean hidden = false;
+            for (int j = 0; j < n + m; j++) {
+                if (position[j] >= 0 || lower[j] == upper[j])
+                    continue;
+                double d = reducedCost(j, phase1);
+                double score;
+                int jDir;
+                if (d < -DUAL_TOL && x[j] < upper[j]) {
+                    score = -d;
+                    jDir = 1;
+                } else if (d > DUAL_TOL && x[j] > lower[j]) {
+                    score = d;
+                    jDir = -1;
+                } else {
+                    continue;
+                }
+                score = bland ? score : score * score / primalWeight[j];
+                if (!(score > 0)) {
+                    hidden = true;
+                }
+                if (score > best) {
+                    best = score;
+                    q = j;
+                    dir = jDir;
+                    if (bland)
+                        break;
+                }
+            }
+            if (q < 0) {
+                if (phase1 && hidden) {
+                    // Infeasibility is only proven without weights, price again with a new reference framework
+                    java.util.Arrays.fill(primalWeight, 1);
+                    continue;
+                }
+                return phase1 ? MipModel.INFEASIBLE : MipModel.OPTIMAL;
+            }
+            iterations++;
+
+            // Ratio test in two passes, the second pass picks the largest pivot
+            column(q);
+            double thetaMax = upper[q] - lower[q];
+            for (int p = 0; p < m; p++) {
+                if (Math.abs(alpha[p]) > PIVOT_TOL) {
+                    double ratio = ratio(p, -dir * alpha[p], PRIMAL_TOL);
+                    if (ratio < thetaMax)
+                        thetaMax = ratio;
+                }
+            }
+            if (thetaMax == Double.POSITIVE_INFINITY) {
+                return MipModel.UNBOUNDED;
+            }
+            int r = -1;
+            double theta = 0;
+            double maxPivot = 0;
+            for (int p = 0; p < m; p++) {
+                double a = Math.abs(alpha[p]);
+                if (a > PIVOT_TOL && a > maxPivot) {
+                    double ratio = ratio(p, -dir * alpha[p], 0);
+                    if (ratio <= thetaMax) {
+                        maxPivot = a;
+                        r = p;
+                        theta = Math.max(ratio, 0);
+                    }
+                }
+            }
+            boolean flip = upper[q] - lower[q] <= thetaMax;
+            if (flip) {
+                theta = upper[q] - lower[q];
+            }
+            degenerate = theta > 1e-12 ? 0 : degenerate + 1;
+
+            // Leaving variable goes to the bound it reaches
+            double leavingValue = 0;
+            if (!flip) {
+                int leaving = head[r];
+                if (-dir * alpha[r] < 0) {
+                    leavingValue = x[leaving] > upper[leaving] + PRIMAL_TOL ? upper[leaving] : lower[leaving];
+                } else {
+                    leavingValue = x[leaving] < lower[leaving] - PRIMAL_TOL ? lower[leaving] : upper[leaving];
+                }
+            }
+
+            // Update values
+            for (int p = 0; p < m; p++) {
+                if (alpha[p] != 0) {
+                    x[head[p]] -= dir * theta * alpha[p];
+                }
+            }
+            if (flip) {
+                x[q] = dir > 0 ? upper[q] : lower[q];
+                continue;
+            }
+            x[q] += dir * theta;
+
+            int leaving = head[r];
+            x[leaving] = leavingValue;
+
+            // Update devex weights with the pivot row
+            row(r, rho);
+            double weightQ = primalWeight[q];
+            for (int j = 0; j < n + m; j++) {
+                if (position[j] >= 0 || j == q)
+                    continue;
+                double a = rowAlpha(j, rho);
+                if (a != 0) {
+                    double ratio = a / alpha[r];
+                    primalWeight[j] = Math.max(primalWeight[j], ratio * ratio * weightQ);
+                }
+            }
+            primalWeight[leaving] = Math.max(weightQ / (alpha[r] * alpha[r]), 1);
+            pivot(r);
+            head[r] = q;
+            position[q] = r;
+            position[leaving] = -1;
+        }
+        return MipModel.NUMERIC;
+    }
+
+    /**
+     * Step length until basic variable at position p reaches a bound when it changes by rate per unit
+     */
+    private double ratio(int p, double rate, double tol) {
+        int j = head[p];
+        if (rate < 0) {
+            if (x[j] > upper[j] + PRIMAL_TOL)
+                return (x[j] - upper[j]) / -rate;
+            if (x[j] >= lower[j] - PRIMAL_TOL && lower[j] > Double.NEGATIVE_INFINITY)
+                return (x[j] - lower[j] + tol) / -rate;
+        } else {
+            if (x[j] < lower[j] - PRIMAL_TOL)
+                return (lower[j] - x[j]) / rate;
+            if (x[j] <= upper[j] + PRIMAL_TOL && upper[j] < Double.POSITIVE_INFINITY)
+                return (upper[j] - x[j] + tol) / rate;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    private double reducedCost(int j, boolean phase1) {
+        if (j >= n) {
+            return y[j - n];
+        }
+        double d = phase1 ? 0 : cost[j];
+        for (int k = colStart[j]; k < colStart[j + 1]; k++) {
+            d -= value[k] * y[rowIndex[k]];
+        }
+        return d;
+    }
+
+    /**
+     * y = basicCost * Binv
+     */
+    private void computeDuals() {
+        System.arraycopy(basicCost, 0, y, 0, m);
+        btran(y);
+    }
+
+    /**
+     * rho = row r of Binv
+     */
+    private void row(int r, double[] rho) {
+        java.util.Arrays.fill(rho, 0);
+        rho[r] = 1;
+        btran(rho);
+    }
+
+    /**
+     * alpha = Binv * column j
+     */
+    private void column(int j) {
+        java.util.Arrays.fill(alpha, 0);
+        if (j >= n) {
+            alpha[j - n] = -1;
+        } else {
+            for (int k = colStart[j]; k < colStart[j + 1]; k++) {
+                alpha[rowIndex[k]] = value[k];
+            }
+        }
+        ftran(alpha);
+    }
+
+    /**
+     * v = Binv * v, v is indexed by rows before and by basis positions after
+     */
+    private void ftran(double[] v) {
+        for (int i = 0; i < m; i++) {
+            v[i] = -v[i];
+        }
+        for (int k = 0; k < etaCount; k++) {
+            int r = etaRow[k];
+            double t = v[r];
+            if (t == 0)
+                continue;
+            t /= etaPivot[k];
+            v[r] = t;
+            for (int e = etaStart[k]; e < etaStart[k + 1]; e++) {
+                v[etaIndex[e]] -= etaValue[e] * t;
+            }
+        }
+    }
+
+    /**
+     * c = c * Binv, c is indexed by basis positions before and by rows after
+     */
+    private void btran(double[] c) {
+        for (int k = etaCount - 1; k >= 0; k--) {
+            int r = etaRow[k];
+            double sum = c[r];
+            for (int e = etaStart[k]; e < etaStart[k + 1]; e++) {
+                sum -= c[etaIndex[e]] * etaValue[e];
+            }
+            c[r] = sum / etaPivot[k];
+        }
+        for (int i = 0; i < m; i++) {
+            c[i] = -c[i];
+        }
+    }
+
+    /**
+     * Append the eta column of a pivot on alpha[r] to the basis inverse
+     */
+    private void pivot(int r) {
+        if (etaCount == etaRow.length) {
+            etaRow = java.util.Arrays.copyOf(etaRow, 2 * etaCount);
+            etaPivot = java.util.Arrays.copyOf(etaPivot, 2 * etaCount);
+            etaStart = java.util.Arrays.copyOf(etaStart, 2 * etaCount + 1);
+        }
+        int size = etaStart[etaCount];
+        if (size + m > etaIndex.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * etaIndex.length, (long) size + m));
+            etaIndex = java.util.Arrays.copyOf(etaIndex, capacity);
+            etaValue = java.util.Arrays.copyOf(etaValue, capacity);
+        }
+        for (int p = 0; p < m; p++) {
+            if (p != r && alpha[p] != 0) {
+                etaIndex[size] = p;
+                etaValue[size++] = alpha[p];
+            }
+        }
+        etaRow[etaCount] = r;
+        etaPivot[etaCount] = alpha[r];
+        etaStart[++etaCount] = size;
+        pivotsSinceRefactor++;
+    }
+
+    /**
+     * Basic values from the nonbasic values: xB = -Binv * N * xN
+     */
+    private void computePrimal() {
+        double[] v = new double[m];
+        for (int j = 0; j < n; j++) {
+            if (position[j] >= 0 || x[j] == 0)
+                continue;
+            for (int k = colStart[j]; k < colStart[j + 1]; k++) {
+                v[rowIndex[k]] += value[k] * x[j];
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            if (position[n + i] < 0) {
+                v[i] -= x[n + i];
+            }
+        }
+        ftran(v);
+        for (int p = 0; p < m; p++) {
+            x[head[p]] = -v[p];
+        }
+        primalValid = true;
+    }
+
+    /**
+     * Recompute basis inverse by pivoting the basic structural variables into a logical basis.
+     * A structural variable that can not be pivoted in becomes nonbasic at a bound.
+     */
+    private void refactor() {
+        int[] structurals = new int[m];
+        int count = 0;
+        for (int p = 0; p < m; p++) {
+            if (head[p] < n) {
+                structurals[count++] = head[p];
+            }
+        }
+        etaCount = 0;
+        for (int p = 0; p < m; p++) {
+            int j = head[p];
+            if (j < n) {
+                position[j] = -1;
+            }
+            head[p] = n + p;
+        }
+        // Logical variables nonbasic in the target basis may be replaced
+        boolean[] replaceable = new boolean[m];
+        for (int i = 0; i < m; i++) {
+            replaceable[i] = position[n + i] < 0;
+            position[n + i] = i;
+        }
+        for (int s = 0; s < count; s++) {
+            int j = structurals[s];
+            column(j);
+            int r = -1;
+            double best = 1e-7;
+            for (int p = 0; p < m; p++) {
+                if (head[p] >= n && replaceable[head[p] - n] && Math.abs(alpha[p]) > best) {
+                    best = Math.abs(alpha[p]);
+                    r = p;
+                }
+            }
+            if (r < 0) {
+                // Singular, keep variable at its nearest bound
+                x[j] = boundValue(j, upper[j] - x[j] < x[j] - lower[j]);
+                continue;
+            }
+            int leaving = head[r];
+            pivot(r);
+            head[r] = j;
+            position[j] = r;
+            position[leaving] = -1;
+        }
+        for (int i = 0; i < m; i++) {
+            if (position[n + i] < 0) {
+                x[n + i] = boundValue(n + i, x[n + i] >= upper[n + i]);
+            }
+        }
+        pivotsSinceRefactor = 0;
+        primalValid = false;
+    }
+
+    /**
+     * Value of a nonbasic variable at its lower or upper bound
+     */
+    private double boundValue(int j, boolean atUpper) {
+        if (atUpper && upper[j] < Double.POSITIVE_INFINITY)
+            return upper[j];
+        if (lower[j] > Double.NEGATIVE_INFINITY)
+            return lower[j];
+        if (upper[j] < Double.POSITIVE_INFINITY)
+            return upper[j];
+        return 0;
+    }
+}
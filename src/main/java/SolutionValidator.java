@@ -0,0 +1,123 @@
+/**
+ * Solver independent check of a districting against the rules of the model. One pass over the
+ * cells sums size and votes of every district, the districts are then compared with the size
+ * limit and the win flags of the solver. The outcome is returned as report, nothing is printed.
+ */
+public class SolutionValidator {
+
+    /**
+     * Check the districting of cells: district[i] is the district of cell i, -1 if it has none,
+     * and assignments[i] the number of districts the solution assigns cell i to. demWin[b] and
+     * repWin[b] are the win flags of district b in the solution, null if the party is not counted.
+     */
+    public static Report validate(CellIndex cells, int districts, int districtSize, int[] district,
+                                  int[] assignments, boolean[] demWin, boolean[] repWin) {
+        Report report = new Report(districts);
+
+        // Size and votes of each district in one pass
+        for (int i = 0; i < cells.count; i++) {
+            if (assignments[i] == 0) {
+                report.unassignedCells++;
+            } else if (assignments[i] > 1) {
+                report.multiplyAssignedCells++;
+            }
+            int b = district[i];
+            if (b < 0)
+                continue;
+            report.size[b]++;
+            report.democrats[b] += cells.d[i];
+            report.republicans[b] += cells.r[i];
+        }
+
+        for (int b = 0; b < districts; b++) {
+            if (report.size[b] < districtSize) {
+                report.undersizedDistricts++;
+            }
+            long lead = report.democrats[b] - report.republicans[b];
+            report.maxDiff = Math.max(report.maxDiff, Math.abs(lead));
+            if (lead > 0) {
+                report.demWins++;
+            } else if (lead < 0) {
+                report.repWins++;
+            }
+
+            // A flag is set exactly if the party has more votes in the district
+            if (demWin != null && demWin[b] != lead > 0) {
+                report.wrongWinFlags++;
+            }
+            if (repWin != null && repWin[b] != lead < 0) {
+                report.wrongWinFlags++;
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Outcome of the check, the solution is valid if every count of violations is 0
+     */
+    public static class Report {
+        /**
+         * Cells without district
+         */
+        public int unassignedCells;
+        /**
+         * Cells in more than one district
+         */
+        public int multiplyAssignedCells;
+        /**
+         * Districts with fewer than districtSize cells
+         */
+        public int undersizedDistricts;
+        /**
+         * Win flags that do not match the votes of their district
+         */
+        public int wrongWinFlags;
+        /**
+         * Every district is connected, only checked for contiguous districts
+         */
+        public boolean connected = true;
+        /**
+         * Districts with more democrat votes
+         */
+        public int demWins;
+        /**
+         * Districts with more republican votes
+         */
+        public int repWins;
+        /**
+         * Largest difference between democrat and republican votes of a district
+         */
+        public long maxDiff;
+        /**
+         * Cells of each district
+         */
+        public final int[] size;
+        /**
+         * Democrat votes of each district
+         */
+        public final long[] democrats;
+        /**
+         * Republican votes of each district
+         */
+        public final long[] republicans;
+
+        Report(int districts) {
+            size = new int[districts];
+            democrats = new long[districts];
+            republicans = new long[districts];
+        }
+
+        public boolean valid() {
+            return unassignedCells == 0 && multiplyAssignedCells == 0 && undersizedDistricts == 0
+                    && wrongWinFlags == 0 && connected;
+        }
+
+        @Override
+        public String toString() {
+            return (valid() ? "valid" : "invalid") + ": " + unassignedCells + " unassigned cells, "
+                    + multiplyAssignedCells + " multiply assigned cells, " + undersizedDistricts
+                    + " undersized districts, " + wrongWinFlags + " wrong win flags"
+                    + (connected ? "" : ", disconnected districts");
+        }
+    }
+}
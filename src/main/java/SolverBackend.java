@@ -0,0 +1,37 @@
+/**
+ * Solver used to optimize the districting model
+ */
+public enum SolverBackend {
+    /**
+     * Gurobi, requires gurobi.jar and a license
+     */
+    GUROBI,
+    /**
+     * Built-in branch and bound, runs without further dependencies
+     */
+    JAVA;
+
+    /**
+     * Create an empty model for this solver
+     */
+    public MipModel newModel() throws Exception {
+        switch (this) {
+            case GUROBI:
+                return new GurobiModel();
+            default:
+                return new BranchAndBoundModel();
+        }
+    }
+
+    /**
+     * Create an environment to share between the models of several elections
+     */
+    public SolverEnvironment newEnvironment() throws Exception {
+        switch (this) {
+            case GUROBI:
+                return new GurobiModel.Environment();
+            default:
+                return BranchAndBoundModel::new;
+        }
+    }
+}
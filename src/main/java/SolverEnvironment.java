@@ -0,0 +1,18 @@
+/**
+ * Solver resources shared by the models of several elections, e.g. the gurobi license.
+ * An environment must only be used by one thread at a time.
+ */
+public interface SolverEnvironment extends AutoCloseable {
+
+    /**
+     * Create an empty model in this environment
+     */
+    MipModel newModel() throws Exception;
+
+    /**
+     * Release the shared resources, failures of the solver are wrapped in an IllegalStateException
+     */
+    @Override
+    default void close() {
+    }
+}
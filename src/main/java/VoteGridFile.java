@@ -0,0 +1,99 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary vote grid holding the populated cells of both parties in one file.
+ * Layout, all values little endian 32 bit integers:
+ * magic, version, width, height, count, followed by the columns x, y, d and r with count entries each.
+ * The file is memory mapped on read and the columns are copied in bulk, nothing is parsed.
+ */
+public class VoteGridFile {
+
+    /**
+     * "VGRD" in ASCII
+     */
+    static final int MAGIC = 0x56475244;
+    static final int VERSION = 1;
+    private static final int HEADER_INTS = 5;
+
+    /**
+     * Convert a democrat and a republican text grid into one binary grid
+     * Usage: VoteGridFile democrats.in republicans.in grid.bin
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: VoteGridFile <democrats.in> <republicans.in> <grid.bin>");
+            System.exit(1);
+        }
+        CellIndex cells = VoteGridReader.readCells(new File(args[0]), new File(args[1]));
+        write(cells, new File(args[2]));
+        System.out.println("Wrote " + cells.count + " populated cells of " + cells.width + "x" + cells.height + " grid to " + args[2]);
+    }
+
+    /**
+     * File starts with the magic number of a binary grid
+     */
+    public static boolean isBinary(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < 4)
+                return false;
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC;
+        }
+    }
+
+    public static CellIndex read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer ints = buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (ints.remaining() < HEADER_INTS || ints.get(0) != MAGIC)
+                throw new IOException("Not a binary vote grid: " + file);
+            if (ints.get(1) != VERSION)
+                throw new IOException("Unsupported binary vote grid version " + ints.get(1) + ": " + file);
+            int width = ints.get(2);
+            int height = ints.get(3);
+            int count = ints.get(4);
+            if (ints.remaining() != HEADER_INTS + 4L * count)
+                throw new IOException("Truncated binary vote grid: " + file);
+
+            CellIndex cells = new CellIndex(width, height);
+            cells.count = count;
+            cells.x = new int[count];
+            cells.y = new int[count];
+            cells.d = new int[count];
+            cells.r = new int[count];
+            ints.position(HEADER_INTS);
+            ints.get(cells.x);
+            ints.get(cells.y);
+            ints.get(cells.d);
+            ints.get(cells.r);
+            return cells;
+        }
+    }
+
+    public static void write(CellIndex cells, File file) throws IOException {
+        long bytes = 4L * (HEADER_INTS + 4L * cells.count);
+        if (bytes > Integer.MAX_VALUE)
+            throw new IOException("Binary vote grid of " + cells.count + " cells exceeds " + Integer.MAX_VALUE + " bytes: " + file);
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(MAGIC).put(VERSION).put(cells.width).put(cells.height).put(cells.count);
+        ints.put(cells.x, 0, cells.count);
+        ints.put(cells.y, 0, cells.count);
+        ints.put(cells.d, 0, cells.count);
+        ints.put(cells.r, 0, cells.count);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
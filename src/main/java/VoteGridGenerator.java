@@ -0,0 +1,164 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded generator of synthetic vote grids for scaling experiments.
+ * Population is concentrated around urban centers whose peak cells reach about peakVotes votes and
+ * falls off into rural land, where part of the cells stays uninhabited. Cities lean towards the
+ * democrats and the countryside towards the republicans, skew shifts the vote share of every cell.
+ * The same seed always produces the same grid.
+ */
+public class VoteGridGenerator {
+
+    public final int width;
+    public final int height;
+    public final long seed;
+    /**
+     * Number of urban centers, 0 picks one per 40000 cells
+     */
+    public int cities = 0;
+    /**
+     * Votes of the densest urban cell
+     */
+    public int peakVotes = 133681;
+    /**
+     * Mean votes of an inhabited rural cell
+     */
+    public int ruralVotes = 20;
+    /**
+     * Share of uninhabited rural cells
+     */
+    public double emptyShare = 0.4;
+    /**
+     * Democrat share added to every cell, positive values favor the democrats
+     */
+    public double skew = 0;
+
+    public VoteGridGenerator(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    /**
+     * Usage: VoteGridGenerator width height seed democrats.in republicans.in [skew]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 5 && args.length != 6) {
+            System.err.println("Usage: VoteGridGenerator <width> <height> <seed> <democrats.in> <republicans.in> [skew]");
+            System.exit(1);
+        }
+        VoteGridGenerator generator = new VoteGridGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+        if (args.length == 6) {
+            generator.skew = Double.parseDouble(args[5]);
+        }
+        CellIndex cells = generator.generate();
+        writeText(cells, new File(args[3]), new File(args[4]));
+        System.out.println("Wrote " + cells.count + " populated cells of " + cells.width + "x" + cells.height + " grid");
+    }
+
+    /**
+     * Populated cells in row major order
+     */
+    public CellIndex generate() {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        // Urban centers with position, radius and weight
+        int cityCount = cities > 0 ? cities : (int) Math.max(1, (long) width * height / 40000);
+        double[] cityX = new double[cityCount];
+        double[] cityY = new double[cityCount];
+        double[] cityRadius = new double[cityCount];
+        double[] cityWeight = new double[cityCount];
+        double size = Math.sqrt((double) width * height);
+        for (int c = 0; c < cityCount; c++) {
+            cityX[c] = random.nextDouble() * width;
+            cityY[c] = random.nextDouble() * height;
+            // Few large and many small cities
+            cityWeight[c] = Math.pow(random.nextDouble(), 3);
+            cityRadius[c] = Math.max(1.0, size * (0.005 + 0.03 * cityWeight[c]));
+        }
+
+        CellIndex cells = new CellIndex(width, height);
+        // Urban intensity in [0, 1] of the strongest city, per cell of the current row
+        double[] urbanRow = new double[width];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(urbanRow, 0);
+            for (int c = 0; c < cityCount; c++) {
+                // Cities reach 4 radii far
+                double dy = (y - cityY[c]) / cityRadius[c];
+                if (dy * dy >= 16)
+                    continue;
+                int reach = (int) Math.ceil(4 * cityRadius[c]);
+                int from = Math.max(0, (int) cityX[c] - reach);
+                int to = Math.min(width - 1, (int) cityX[c] + reach);
+                for (int x = from; x <= to; x++) {
+                    double dx = (x - cityX[c]) / cityRadius[c];
+                    double distance = dx * dx + dy * dy;
+                    if (distance < 16) {
+                        urbanRow[x] = Math.max(urbanRow[x], (0.1 + 0.9 * cityWeight[c]) * Math.exp(-distance));
+                    }
+                }
+            }
+
+            for (int x = 0; x < width; x++) {
+                double urban = urbanRow[x];
+                // Rural cells are inhabited by chance
+                if (urban < 0.01 && random.nextDouble() < emptyShare)
+                    continue;
+                double mean = ruralVotes + urban * peakVotes;
+                int votes = (int) Math.round(mean * (0.5 + random.nextDouble()));
+                if (votes == 0)
+                    continue;
+
+                double share = 0.42 + 0.3 * Math.sqrt(urban) + skew + 0.15 * (random.nextDouble() - 0.5);
+                share = Math.max(0, Math.min(1, share));
+                int d = (int) Math.round(votes * share);
+                cells.add(x, y, d, votes - d);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Write cells in row major order as democrat and republican text grid, rows are written as they are produced
+     */
+    public static void writeText(CellIndex cells, File democratFile, File republicanFile) throws IOException {
+        try (Writer dem = new BufferedWriter(new FileWriter(democratFile), 1 << 16);
+             Writer rep = new BufferedWriter(new FileWriter(republicanFile), 1 << 16)) {
+            String header = cells.width + " " + cells.height + "\n";
+            dem.write(header);
+            rep.write(header);
+            StringBuilder demRow = new StringBuilder();
+            StringBuilder repRow = new StringBuilder();
+            int i = 0;
+            for (int y = 0; y < cells.height; y++) {
+                demRow.setLength(0);
+                repRow.setLength(0);
+                for (int x = 0; x < cells.width; x++) {
+                    int d = 0;
+                    int r = 0;
+                    if (i < cells.count && cells.y[i] == y && cells.x[i] == x) {
+                        d = cells.d[i];
+                        r = cells.r[i];
+                        i++;
+                    }
+                    if (x > 0) {
+                        demRow.append(' ');
+                        repRow.append(' ');
+                    }
+                    demRow.append(d);
+                    repRow.append(r);
+                }
+                demRow.append('\n');
+                repRow.append('\n');
+                dem.append(demRow);
+                rep.append(repRow);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the whitespace separated integers of a vote grid file. The file is memory mapped and
+ * ASCII digits are decoded directly from the mapped bytes, no token is allocated.
+ */
+class VoteGridReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int pos;
+
+    VoteGridReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("File too large to map: " + file);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Read the populated cells of a democrat and a republican text grid with equal dimensions
+     */
+    static CellIndex readCells(File democratFile, File republicanFile) throws IOException {
+        // Cells with democrat votes
+        CellIndex democrats;
+        try (VoteGridReader inp = new VoteGridReader(democratFile)) {
+            int width = inp.nextInt();
+            int height = inp.nextInt();
+            democrats = new CellIndex(width, height);
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                inp.readInts(row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    if (row[x] != 0) {
+                        democrats.add(x, y, row[x], 0);
+                    }
+                }
+            }
+        }
+
+        // Cells with democrat or republican votes, uninhabited cells are skipped
+        try (VoteGridReader inp = new VoteGridReader(republicanFile)) {
+            int width = democrats.width;
+            int height = democrats.height;
+            if (width != inp.nextInt() || height != inp.nextInt())
+                throw new IllegalStateException("Files have not same number of cells");
+            CellIndex cells = new CellIndex(width, height);
+            int[] row = new int[width];
+            int k = 0;
+            for (int y = 0; y < height; y++) {
+                inp.readInts(row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int d = 0;
+                    if (k < democrats.count && democrats.y[k] == y && democrats.x[k] == x) {
+                        d = democrats.d[k++];
+                    }
+
+                    // Ignore inhabited area
+                    if (d + row[x] == 0)
+                        continue;
+
+                    cells.add(x, y, d, row[x]);
+                }
+            }
+            return cells;
+        }
+    }
+
+    /**
+     * Next integer of the file
+     */
+    int nextInt() throws IOException {
+        int limit = buffer.limit();
+        // Skip whitespace
+        while (pos < limit && buffer.get(pos) <= ' ') {
+            pos++;
+        }
+        if (pos == limit)
+            throw new EOFException("Unexpected end of file");
+
+        boolean negative = buffer.get(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int start = pos;
+        int value = 0;
+        while (pos < limit) {
+            int c = buffer.get(pos) - '0';
+            if (c < 0 || c > 9)
+                break;
+            value = value * 10 + c;
+            pos++;
+        }
+        if (pos == start || (pos < limit && buffer.get(pos) > ' '))
+            throw new NumberFormatException("Invalid number at byte " + start);
+        return negative ? -value : value;
+    }
+
+    /**
+     * Read count integers into target starting at offset
+     */
+    void readInts(int[] target, int offset, int count) throws IOException {
+        for (int i = offset; i < offset + count; i++) {
+            target[i] = nextInt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,743 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BranchAndBoundElectionTest {
+
+    /**
+     * Testcase 1:
+     * Not enough districts
+     */
+    @Test public void testcase_1() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_1.in", "rep_tc_1.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.INFEASIBLE);
+        assertEquals(0, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 2:
+     * Same number of equal districts leading to a draw
+     */
+    @Test public void testcase_2() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_2.in", "rep_tc_2.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(0, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 3:
+     * One equal district leads to a 9:0 victory for democrats
+     */
+    @Test public void testcase_3() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_3.in", "rep_tc_3.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(9, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 4:
+     * All districts won by democrats optimized by democrats
+     */
+    @Test public void testcase_4() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_4.in", "rep_tc_4.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(10, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 5:
+     * All districts won by democrats optimized by republicans
+     */
+    @Test public void testcase_5() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_5.in", "rep_tc_5.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, false);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(10, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 6:
+     * All districts won by republicans optimized by democrats
+     */
+    @Test public void testcase_6() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_6.in", "rep_tc_6.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(0, election.demVictoryCount);
+        assertEquals(10, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 7:
+     * All districts won by republicans optimized by republicans
+     */
+    @Test public void testcase_7() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_7.in", "rep_tc_7.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, false);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(0, election.demVictoryCount);
+        assertEquals(10, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 8:
+     * 5 district won by republicans, 5 by democrats, optimized by democrats
+     */
+    @Test public void testcase_8() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(5, election.demVictoryCount);
+        assertEquals(5, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 9:
+     * 5 district won by republicans, 5 by democrats, optimized by republicans
+     */
+    @Test public void testcase_9() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_9.in", "rep_tc_9.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(5, election.demVictoryCount);
+        assertEquals(5, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 10:
+     * Small M leads to infeasable solution
+     */
+    @Test public void testcase_10() throws Exception {
+        // Setup using small m
+        Election election = new Election("dem_tc_10.in", "rep_tc_10.in", 1, 1);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.INFEASIBLE);
+
+        // Setup using correct m
+        election = new Election("dem_tc_10.in", "rep_tc_10.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(5, election.demVictoryCount);
+        assertEquals(5, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 11:
+     * Optmimize Democtrats using main input files
+     */
+    @Test public void testcase_11() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_11.in", "rep_tc_11.in", 135, 200000000);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(10, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 12
+     * Optmimize Republicans using main input files
+     */
+    @Test public void testcase_12() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_12.in", "rep_tc_12.in", 135, 200000000);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, false);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(3, election.demVictoryCount);
+        assertEquals(7, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 13:
+     * Binary grid converted from testcase 8 leads to the same result
+     */
+    @Test public void testcase_13() throws Exception {
+        // Setup
+        File grid = File.createTempFile("tc_8", ".bin");
+        grid.deleteOnExit();
+        ClassLoader classLoader = getClass().getClassLoader();
+        CellIndex cells = VoteGridReader.readCells(new File(classLoader.getResource("dem_tc_8.in").getFile()),
+                new File(classLoader.getResource("rep_tc_8.in").getFile()));
+        VoteGridFile.write(cells, grid);
+        Election election = new Election(grid.getPath(), 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(5, election.demVictoryCount);
+        assertEquals(5, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 14:
+     * Concurrent batch of testcases 3 to 9 leads to the same results as single runs
+     */
+    @Test public void testcase_14() throws Exception {
+        // Setup
+        List<ElectionBatch.Scenario> scenarios = new ArrayList<>();
+        boolean[] optimizeDemocrats = {true, true, false, true, false, true, true};
+        for (int i = 3; i <= 9; i++) {
+            scenarios.add(new ElectionBatch.Scenario("dem_tc_" + i + ".in", "rep_tc_" + i + ".in", 1, 2, optimizeDemocrats[i - 3]));
+        }
+        ElectionBatch batch = new ElectionBatch(SolverBackend.JAVA, 4);
+
+        // Run elections
+        List<Election> elections = batch.run(scenarios);
+
+        // Check results
+        int[] demVictoryCount = {9, 10, 10, 0, 0, 5, 5};
+        int[] repVictoryCount = {0, 0, 0, 10, 10, 5, 5};
+        for (int i = 0; i < elections.size(); i++) {
+            assertTrue(elections.get(i).status == MipModel.OPTIMAL);
+            assertEquals(demVictoryCount[i], elections.get(i).demVictoryCount);
+            assertEquals(repVictoryCount[i], elections.get(i).repVictoryCount);
+        }
+    }
+
+    /**
+     * Testcase 15:
+     * Both objectives on one model, six democrat and five republican cells allow
+     * six democrat wins or five republican wins, the model of each objective is exported
+     */
+    @Test public void testcase_15() throws Exception {
+        // Setup
+        File directory = Files.createTempDirectory("tc_15").toFile();
+        directory.deleteOnExit();
+        File grid = File.createTempFile("tc_15", ".bin");
+        grid.deleteOnExit();
+        CellIndex cells = new CellIndex(11, 1);
+        for (int x = 0; x < 11; x++) {
+            cells.add(x, 0, x < 6 ? 2 : 1, x < 6 ? 1 : 2);
+        }
+        VoteGridFile.write(cells, grid);
+        Election election = new Election(grid.getPath(), 1, 4);
+        election.solver = SolverBackend.JAVA;
+        election.exportDirectory = directory.getPath();
+
+        // Run election
+        int[] winCounts = election.maxWinCounts();
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(6, winCounts[0]);
+        assertEquals(5, winCounts[1]);
+        assertEquals(6, election.demVictoryCount);
+        assertEquals(5, election.repVictoryCount);
+        assertTrue(new File(directory, "democrats.mps").exists());
+        assertTrue(new File(directory, "republicans.mps").exists());
+        for (File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Testcase 16:
+     * Both objectives in one solver call lead to the same result as testcase 15
+     */
+    @Test public void testcase_16() throws Exception {
+        // Setup
+        File grid = File.createTempFile("tc_16", ".bin");
+        grid.deleteOnExit();
+        CellIndex cells = new CellIndex(11, 1);
+        for (int x = 0; x < 11; x++) {
+            cells.add(x, 0, x < 6 ? 2 : 1, x < 6 ? 1 : 2);
+        }
+        VoteGridFile.write(cells, grid);
+        Election election = new Election(grid.getPath(), 1, 4);
+        election.solver = SolverBackend.JAVA;
+        election.multiScenario = true;
+        election.warmStart = true;
+        election.export = ModelExport.OFF;
+
+        // Run election
+        int[] winCounts = election.maxWinCounts();
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(6, winCounts[0]);
+        assertEquals(5, winCounts[1]);
+    }
+
+    /**
+     * Testcase 19:
+     * M computed from the votes leads to the result of testcase 10 without guessing m
+     */
+    @Test public void testcase_19() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_10.in", "rep_tc_10.in", 1);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(5, election.demVictoryCount);
+        assertEquals(5, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 20:
+     * Global M and indicator constraints lead to the results of testcases 3 and 6
+     */
+    @Test public void testcase_20() throws Exception {
+        for (BigM bigM : new BigM[]{BigM.GLOBAL, BigM.INDICATOR}) {
+            // Setup
+            Election democrats = new Election("dem_tc_3.in", "rep_tc_3.in", 1, 0);
+            democrats.solver = SolverBackend.JAVA;
+            democrats.presolve = false;
+            democrats.bigM = bigM;
+            Election republicans = new Election("dem_tc_6.in", "rep_tc_6.in", 1, 0);
+            republicans.solver = SolverBackend.JAVA;
+            republicans.presolve = false;
+            republicans.bigM = bigM;
+
+            // Run election
+            democrats.winCount(true, true, true);
+            republicans.winCount(true, true, false);
+
+            // Check result
+            assertTrue(democrats.status == MipModel.OPTIMAL);
+            assertEquals(9, democrats.demVictoryCount);
+            assertEquals(0, democrats.repVictoryCount);
+            assertTrue(republicans.status == MipModel.OPTIMAL);
+            assertEquals(0, republicans.demVictoryCount);
+            assertEquals(10, republicans.repVictoryCount);
+        }
+    }
+
+    /**
+     * Testcase 21:
+     * Contiguous districts on a row with republican strongholds at both ends cost one democrat win
+     */
+    @Test public void testcase_21() throws Exception {
+        // Setup
+        Election scattered = new Election("dem_tc_13.in", "rep_tc_13.in", 1);
+        scattered.solver = SolverBackend.JAVA;
+        scattered.presolve = false;
+        scattered.breakSymmetry = true;
+        Election election = new Election("dem_tc_13.in", "rep_tc_13.in", 1);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+        election.contiguous = true;
+        election.breakSymmetry = true;
+
+        // Run election
+        scattered.winCount(true, true, true);
+        election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(scattered.status == MipModel.OPTIMAL);
+        assertEquals(9, scattered.demVictoryCount);
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(8, election.demVictoryCount);
+        assertEquals(2, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 22:
+     * Vote updates on the model of testcase 8 without rebuilding it, a swing cell adds a democrat
+     * win that the second update takes away again
+     */
+    @Test public void testcase_22() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_8.in", "rep_tc_8.in", 1);
+        election.solver = SolverBackend.JAVA;
+        election.breakSymmetry = true;
+
+        try (ElectionSession session = new ElectionSession(election, true)) {
+            // Run session
+            int initialWinCount = session.solve();
+            session.updateVotes(5, 0, 3, 1);
+            int swingWinCount = session.solve();
+            session.updateVotes(0, 0, 0, 2);
+            session.updateVotes(1, 0, 0, 2);
+            int lossWinCount = session.solve();
+
+            // Check result
+            assertEquals(5, initialWinCount);
+            assertEquals(6, swingWinCount);
+            assertEquals(4, lossWinCount);
+            assertTrue(election.status == MipModel.OPTIMAL);
+            assertEquals(3, session.solveCount);
+            assertEquals(0, session.pendingUpdates);
+        }
+    }
+
+    /**
+     * Testcase 23:
+     * Compressed model of testcase 8 is exported in the background and reused by a second election
+     * without parsing and building, which leads to the same result
+     */
+    @Test public void testcase_23() throws Exception {
+        // Setup
+        File directory = Files.createTempDirectory("tc_23").toFile();
+        directory.deleteOnExit();
+        Election built = new Election("dem_tc_8.in", "rep_tc_8.in", 1);
+        built.solver = SolverBackend.JAVA;
+        built.presolve = false;
+        built.compressExport = true;
+        built.exportDirectory = directory.getPath();
+        built.modelCache = directory.getPath();
+        Election reused = new Election("dem_tc_8.in", "rep_tc_8.in", 1);
+        reused.solver = SolverBackend.JAVA;
+        reused.presolve = false;
+        reused.export = ModelExport.OFF;
+        reused.modelCache = directory.getPath();
+
+        // Run elections
+        built.winCount(true, false, true);
+        built.awaitExport();
+        reused.winCount(true, false, true);
+
+        // Check result
+        assertFalse(built.modelReused);
+        assertTrue(new File(directory, "democrats.mps.gz").exists());
+        assertTrue(reused.modelReused);
+        assertTrue(reused.status == MipModel.OPTIMAL);
+        assertEquals(built.demVictoryCount, reused.demVictoryCount);
+        assertEquals(5, reused.demVictoryCount);
+        assertEquals(10, reused.cells.count);
+        for (File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Testcase 26:
+     * Term by term build with names leads to the result of the bulk build of testcase 21
+     */
+    @Test public void testcase_26() throws Exception {
+        // Setup
+        Election bulk = new Election("dem_tc_13.in", "rep_tc_13.in", 1);
+        bulk.solver = SolverBackend.JAVA;
+        bulk.presolve = false;
+        bulk.breakSymmetry = true;
+        Election terms = new Election("dem_tc_13.in", "rep_tc_13.in", 1);
+        terms.solver = SolverBackend.JAVA;
+        terms.presolve = false;
+        terms.breakSymmetry = true;
+        terms.bulkBuild = false;
+
+        // Run elections
+        bulk.winCount(true, true, true);
+        terms.winCount(true, true, true);
+
+        // Check result
+        assertTrue(terms.status == MipModel.OPTIMAL);
+        assertEquals(bulk.demVictoryCount, terms.demVictoryCount);
+        assertEquals(bulk.repVictoryCount, terms.repVictoryCount);
+        assertEquals(9, terms.demVictoryCount);
+    }
+
+    /**
+     * Testcase 27:
+     * Validation of the solution of testcase 8 and of a districting without a cell
+     */
+    @Test public void testcase_27() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+
+        // Run election
+        election.winCount(true, true, true);
+        int[] district = election.district.clone();
+        int[] assignments = new int[district.length];
+        Arrays.fill(assignments, 1);
+        boolean[] demWin = new boolean[Election.B];
+        for (int i = 0; i < district.length; i++) {
+            demWin[district[i]] = election.cells.d[i] > election.cells.r[i];
+        }
+        int removed = district[0];
+        district[0] = -1;
+        assignments[0] = 0;
+        assignments[1] = 2;
+        SolutionValidator.Report report = SolutionValidator.validate(election.cells, Election.B, 1,
+                district, assignments, demWin, null);
+
+        // Check result
+        assertTrue(election.validation.valid());
+        assertEquals(5, election.validation.demWins);
+        assertEquals(1, election.validation.maxDiff);
+        assertFalse(report.valid());
+        assertEquals(1, report.unassignedCells);
+        assertEquals(1, report.multiplyAssignedCells);
+        assertEquals(1, report.undersizedDistricts);
+        assertEquals(0, report.size[removed]);
+        // The democrat flag of the emptied district no longer matches its votes
+        assertEquals(1, report.wrongWinFlags);
+        assertEquals(4, report.demWins);
+    }
+
+    /**
+     * Testcase 28:
+     * Presolve decides testcase 1 and testcase 8 without solver, also if the model of testcase 8 is exported,
+     * a small M of testcase 10 is left to the solver
+     */
+    @Test public void testcase_28() throws Exception {
+        // Setup
+        File directory = Files.createTempDirectory("tc_28").toFile();
+        directory.deleteOnExit();
+        Election tooFewCells = new Election("dem_tc_1.in", "rep_tc_1.in", 1, 2);
+        tooFewCells.solver = SolverBackend.JAVA;
+        Election greedy = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        greedy.solver = SolverBackend.JAVA;
+        Election smallM = new Election("dem_tc_10.in", "rep_tc_10.in", 1, 1);
+        smallM.solver = SolverBackend.JAVA;
+        Election exported = new Election("dem_tc_8.in", "rep_tc_8.in", 1);
+        exported.solver = SolverBackend.JAVA;
+        exported.export = ModelExport.SYNC;
+        exported.exportDirectory = directory.getPath();
+
+        // Run elections
+        tooFewCells.winCount(true, true, true);
+        greedy.winCount(true, true, true);
+        smallM.winCount(true, true, true);
+        exported.winCount(true, false, true);
+
+        // Check result
+        assertTrue(tooFewCells.presolved);
+        assertEquals(MipModel.INFEASIBLE, tooFewCells.status);
+        assertTrue(greedy.presolved);
+        assertEquals(MipModel.OPTIMAL, greedy.status);
+        assertEquals(5, greedy.demVictoryCount);
+        assertEquals(5, greedy.repVictoryCount);
+        assertTrue(greedy.validation.valid());
+        assertFalse(smallM.presolved);
+        assertEquals(MipModel.INFEASIBLE, smallM.status);
+        assertTrue(exported.presolved);
+        assertEquals(5, exported.demVictoryCount);
+        assertTrue(new File(directory, "democrats.mps").exists());
+        for (File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Testcase 29:
+     * Testcase 8 with the last cell not reported yet, the session holds it as reporting cell with
+     * zero votes and its first update adds a democrat win
+     */
+    @Test public void testcase_29() throws Exception {
+        // Setup
+        File democrats = File.createTempFile("dem_tc_29", ".in");
+        democrats.deleteOnExit();
+        File republicans = File.createTempFile("rep_tc_29", ".in");
+        republicans.deleteOnExit();
+        Files.write(democrats.toPath(), "10 1\n1 1 1 1 1 0 0 0 0 0\n".getBytes("UTF-8"));
+        Files.write(republicans.toPath(), "10 1\n0 0 0 0 0 1 1 1 1 0\n".getBytes("UTF-8"));
+        Election election = new Election(democrats.getPath(), republicans.getPath(), 1);
+        election.solver = SolverBackend.JAVA;
+
+        try (ElectionSession session = new ElectionSession(election, true, new int[]{9}, new int[]{0})) {
+            // Run session
+            int initialWinCount = session.solve();
+            session.updateVotes(9, 0, 2, 0);
+            int reportedWinCount = session.solve();
+
+            // Check result
+            assertEquals(10, election.cells.count);
+            assertEquals(5, initialWinCount);
+            assertEquals(6, reportedWinCount);
+            assertTrue(election.status == MipModel.OPTIMAL);
+        }
+    }
+
+    /**
+     * Testcase 30:
+     * Aggregated cells of testcase 8 and of a grid of repeated vote pairs in three districts lead to the
+     * wins of the cell model for both objectives, the class counts are mapped back to a valid districting
+     */
+    @Test public void testcase_30() throws Exception {
+        // Setup
+        File democrats = File.createTempFile("dem_tc_30", ".in");
+        democrats.deleteOnExit();
+        File republicans = File.createTempFile("rep_tc_30", ".in");
+        republicans.deleteOnExit();
+        Files.write(democrats.toPath(), "10 1\n3 3 3 3 1 1 1 1 0 0\n".getBytes("UTF-8"));
+        Files.write(republicans.toPath(), "10 1\n1 1 1 1 2 2 2 2 4 4\n".getBytes("UTF-8"));
+        String[][] grids = {{"dem_tc_8.in", "rep_tc_8.in"}, {democrats.getPath(), republicans.getPath()}};
+        int[] districtSizes = {1, 3};
+        int[] districts = {Election.B, 3};
+
+        for (int g = 0; g < grids.length; g++) {
+            for (boolean optimizeDemocrats : new boolean[]{true, false}) {
+                Election cellModel = new Election(grids[g][0], grids[g][1], districtSizes[g]);
+                cellModel.solver = SolverBackend.JAVA;
+                cellModel.presolve = false;
+                cellModel.districts = districts[g];
+                Election aggregated = new Election(grids[g][0], grids[g][1], districtSizes[g]);
+                aggregated.solver = SolverBackend.JAVA;
+                aggregated.presolve = false;
+                aggregated.districts = districts[g];
+                aggregated.aggregateCells = true;
+
+                // Run elections
+                cellModel.winCount(true, true, optimizeDemocrats);
+                aggregated.winCount(true, true, optimizeDemocrats);
+                int[] assignments = new int[aggregated.cells.count];
+                Arrays.fill(assignments, 1);
+                SolutionValidator.Report report = SolutionValidator.validate(aggregated.cells, districts[g],
+                        districtSizes[g], aggregated.district, assignments, null, null);
+
+                // Check result
+                assertTrue(cellModel.status == MipModel.OPTIMAL);
+                assertTrue(aggregated.status == MipModel.OPTIMAL);
+                if (optimizeDemocrats) {
+                    assertEquals(cellModel.demVictoryCount, aggregated.demVictoryCount);
+                    assertEquals(aggregated.demVictoryCount, report.demWins);
+                } else {
+                    assertEquals(cellModel.repVictoryCount, aggregated.repVictoryCount);
+                    assertEquals(aggregated.repVictoryCount, report.repWins);
+                }
+                assertTrue(report.valid());
+                assertTrue(aggregated.validation.valid());
+            }
+        }
+    }
+
+    /**
+     * Testcase 31:
+     * Three populated cells separated by uninhabited cells form contiguous districts across them,
+     * the outer cells can not share a district without the middle one
+     */
+    @Test public void testcase_31() throws Exception {
+        // Setup
+        File democrats = File.createTempFile("dem_tc_31", ".in");
+        democrats.deleteOnExit();
+        File republicans = File.createTempFile("rep_tc_31", ".in");
+        republicans.deleteOnExit();
+        Files.write(democrats.toPath(), "5 1\n2 0 1 0 2\n".getBytes("UTF-8"));
+        Files.write(republicans.toPath(), "5 1\n1 0 2 0 1\n".getBytes("UTF-8"));
+        Election scattered = new Election(democrats.getPath(), republicans.getPath(), 1);
+        scattered.solver = SolverBackend.JAVA;
+        scattered.presolve = false;
+        scattered.districts = 2;
+        Election election = new Election(democrats.getPath(), republicans.getPath(), 1);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+        election.districts = 2;
+        election.contiguous = true;
+
+        // Run election
+        scattered.winCount(true, true, false);
+        election.winCount(true, true, false);
+
+        // Check result
+        assertTrue(scattered.status == MipModel.OPTIMAL);
+        assertEquals(1, scattered.repVictoryCount);
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(0, election.repVictoryCount);
+        assertTrue(election.validation.valid());
+    }
+}
@@ -0,0 +1,53 @@
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+public class DistrictingServiceTest {
+
+    /**
+     * Testcase 8:
+     * Testcase 8 sent to the districting service streams job states, phases and the result,
+     * a job without district size is rejected
+     */
+    @Test public void testcase_8() throws Exception {
+        try (DistrictingService service = new DistrictingService(SolverBackend.JAVA, 0, 1, 4)) {
+            // Setup
+            String url = "http://127.0.0.1:" + service.port();
+
+            // Run jobs
+            HttpURLConnection job = (HttpURLConnection) new URL(url
+                    + "/solve?democrats=dem_tc_8.in&republicans=rep_tc_8.in&size=1&m=2&presolve=false").openConnection();
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(job.getInputStream(), "UTF-8"))) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    lines.add(line);
+                }
+            }
+            HttpURLConnection invalid = (HttpURLConnection) new URL(url
+                    + "/solve?democrats=dem_tc_8.in&republicans=rep_tc_8.in").openConnection();
+            HttpURLConnection status = (HttpURLConnection) new URL(url + "/status").openConnection();
+            String statusLine;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(status.getInputStream(), "UTF-8"))) {
+                statusLine = in.readLine();
+            }
+
+            // Check result
+            assertEquals(200, job.getResponseCode());
+            String events = String.join("\n", lines);
+            assertTrue(lines.get(0).contains("\"state\":\"queued\""));
+            assertTrue(events.contains("\"event\":\"phase\",\"source\":\"dem_tc_8.in\",\"phase\":\"optimize\""));
+            assertTrue(events.contains("\"status\":2,\"demWins\":5,\"repWins\":5"));
+            assertTrue(lines.get(lines.size() - 1).contains("\"state\":\"done\""));
+            assertEquals(400, invalid.getResponseCode());
+            assertEquals("{\"running\":0,\"queued\":0,\"completed\":1}", statusLine);
+        }
+    }
+}
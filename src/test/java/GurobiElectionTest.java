@@ -14,6 +14,7 @@ public class GurobiElectionTest {
     @Test public void testcase_1() throws Exception {
         // Setup
         Election election = new Election("dem_tc_1.in", "rep_tc_1.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -31,6 +32,7 @@ public class GurobiElectionTest {
     @Test public void testcase_2() throws Exception {
         // Setup
         Election election = new Election("dem_tc_2.in", "rep_tc_2.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -48,6 +50,7 @@ public class GurobiElectionTest {
     @Test public void testcase_3() throws Exception {
         // Setup
         Election election = new Election("dem_tc_3.in", "rep_tc_3.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -65,6 +68,7 @@ public class GurobiElectionTest {
     @Test public void testcase_4() throws Exception {
         // Setup
         Election election = new Election("dem_tc_4.in", "rep_tc_4.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -82,6 +86,7 @@ public class GurobiElectionTest {
     @Test public void testcase_5() throws Exception {
         // Setup
         Election election = new Election("dem_tc_5.in", "rep_tc_5.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, false);
@@ -99,6 +104,7 @@ public class GurobiElectionTest {
     @Test public void testcase_6() throws Exception {
         // Setup
         Election election = new Election("dem_tc_6.in", "rep_tc_6.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -116,6 +122,7 @@ public class GurobiElectionTest {
     @Test public void testcase_7() throws Exception {
         // Setup
         Election election = new Election("dem_tc_7.in", "rep_tc_7.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, false);
@@ -133,6 +140,7 @@ public class GurobiElectionTest {
     @Test public void testcase_8() throws Exception {
         // Setup
         Election election = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -150,6 +158,7 @@ public class GurobiElectionTest {
     @Test public void testcase_9() throws Exception {
         // Setup
         Election election = new Election("dem_tc_9.in", "rep_tc_9.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -167,6 +176,7 @@ public class GurobiElectionTest {
     @Test public void testcase_10() throws Exception {
         // Setup using small m
         Election election = new Election("dem_tc_10.in", "rep_tc_10.in", 1, 1);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -176,6 +186,7 @@ public class GurobiElectionTest {
 
         // Setup using correct m
         election = new Election("dem_tc_10.in", "rep_tc_10.in", 1, 2);
+        election.presolve = false;
 
         // Run election
         democratWinCount = election.winCount(true, true, true);
@@ -193,6 +204,7 @@ public class GurobiElectionTest {
     @Test public void testcase_11() throws Exception {
         // Setup
         Election election = new Election("dem_tc_11.in", "rep_tc_11.in", 135, 200000000);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, true);
@@ -210,6 +222,7 @@ public class GurobiElectionTest {
     @Test public void testcase_12() throws Exception {
         // Setup
         Election election = new Election("dem_tc_12.in", "rep_tc_12.in", 135, 200000000);
+        election.presolve = false;
 
         // Run election
         int democratWinCount = election.winCount(true, true, false);
@@ -220,4 +233,104 @@ public class GurobiElectionTest {
         assertEquals(7, election.repVictoryCount);
     }
 
+    /**
+     * Testcase 13:
+     * Optimize Democrats with aggregated cells leads to same result as testcase 11
+     */
+    @Test public void testcase_13() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_11.in", "rep_tc_11.in", 135, 200000000);
+        election.presolve = false;
+        election.aggregateCells = true;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(election.status == GRB.Status.OPTIMAL);
+        assertEquals(10, election.demVictoryCount);
+        assertEquals(0, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 14:
+     * Optimize Republicans with aggregated cells leads to same result as testcase 12
+     */
+    @Test public void testcase_14() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_12.in", "rep_tc_12.in", 135, 200000000);
+        election.presolve = false;
+        election.aggregateCells = true;
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, false);
+
+        // Check result
+        assertTrue(election.status == GRB.Status.OPTIMAL);
+        assertEquals(3, election.demVictoryCount);
+        assertEquals(7, election.repVictoryCount);
+    }
+
+    /**
+     * Testcase 15:
+     * Both objectives on one model with aggregated cells lead to the results of testcases 11 and 12
+     */
+    @Test public void testcase_15() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_12.in", "rep_tc_12.in", 135, 200000000);
+        election.aggregateCells = true;
+        election.export = ModelExport.OFF;
+
+        // Run election
+        int[] winCounts = election.maxWinCounts();
+
+        // Check result
+        assertTrue(election.status == GRB.Status.OPTIMAL);
+        assertEquals(10, winCounts[0]);
+        assertEquals(7, winCounts[1]);
+    }
+
+    /**
+     * Testcase 16:
+     * Both objectives in one multi-scenario optimization lead to the same result as testcase 15
+     */
+    @Test public void testcase_16() throws Exception {
+        // Setup
+        Election election = new Election("dem_tc_12.in", "rep_tc_12.in", 135, 200000000);
+        election.aggregateCells = true;
+        election.multiScenario = true;
+        election.export = ModelExport.OFF;
+
+        // Run election
+        int[] winCounts = election.maxWinCounts();
+
+        // Check result
+        assertTrue(election.status == GRB.Status.OPTIMAL);
+        assertEquals(10, winCounts[0]);
+        assertEquals(7, winCounts[1]);
+    }
+
+    /**
+     * Testcase 17:
+     * Contiguous districts on a row with republican strongholds at both ends cost one democrat win
+     */
+    @Test public void testcase_17() throws Exception {
+        // Setup
+        Election scattered = new Election("dem_tc_13.in", "rep_tc_13.in", 1);
+        scattered.presolve = false;
+        Election election = new Election("dem_tc_13.in", "rep_tc_13.in", 1);
+        election.presolve = false;
+        election.contiguous = true;
+
+        // Run election
+        scattered.winCount(true, true, true);
+        election.winCount(true, true, true);
+
+        // Check result
+        assertTrue(scattered.status == MipModel.OPTIMAL);
+        assertEquals(9, scattered.demVictoryCount);
+        assertTrue(election.status == MipModel.OPTIMAL);
+        assertEquals(8, election.demVictoryCount);
+        assertEquals(2, election.repVictoryCount);
+    }
 }
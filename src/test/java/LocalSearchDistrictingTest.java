@@ -0,0 +1,79 @@
+import org.junit.Test;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalSearchDistrictingTest {
+
+    /**
+     * Testcase 1:
+     * Not enough districts
+     */
+    @Test public void testcase_1() throws Exception {
+        // Setup
+        LocalSearchDistricting search = new LocalSearchDistricting(readCells(1), Election.B, 1, true);
+
+        // Run search
+        LocalSearchDistricting.Result result = search.solve(100, 2, 1);
+
+        // Check result
+        assertNull(result);
+    }
+
+    /**
+     * Testcase 8:
+     * 5 district won by republicans, 5 by democrats, optimized by democrats
+     */
+    @Test public void testcase_8() throws Exception {
+        // Setup
+        LocalSearchDistricting search = new LocalSearchDistricting(readCells(8), Election.B, 1, true);
+
+        // Run search
+        LocalSearchDistricting.Result result = search.solve(100, 2, 1);
+
+        // Check result
+        assertEquals(5, result.wins);
+        assertEquals(5, result.bound);
+        assertEquals(0, result.gap());
+    }
+
+    /**
+     * Testcase 12
+     * Optmimize Republicans using main input files
+     */
+    @Test public void testcase_12() throws Exception {
+        // Setup
+        CellIndex cells = readCells(12);
+        LocalSearchDistricting search = new LocalSearchDistricting(cells, Election.B, 135, false);
+
+        // Run search
+        LocalSearchDistricting.Result result = search.solve(1000, 2, 1);
+
+        // Check result
+        assertEquals(7, result.wins);
+        assertEquals(7, result.bound);
+
+        // Check assignment
+        int[] size = new int[Election.B];
+        long[] margin = new long[Election.B];
+        for (int i = 0; i < cells.count; i++) {
+            size[result.district[i]]++;
+            margin[result.district[i]] += cells.r[i] - cells.d[i];
+        }
+        int wins = 0;
+        for (int b = 0; b < Election.B; b++) {
+            assertTrue(size[b] >= 135);
+            wins += margin[b] > 0 ? 1 : 0;
+        }
+        assertEquals(7, wins);
+    }
+
+    private CellIndex readCells(int testcase) throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        return VoteGridReader.readCells(new File(classLoader.getResource("dem_tc_" + testcase + ".in").getFile()),
+                new File(classLoader.getResource("rep_tc_" + testcase + ".in").getFile()));
+    }
+}
@@ -0,0 +1,38 @@
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static junit.framework.Assert.assertTrue;
+
+public class MetricsLogTest {
+
+    /**
+     * Testcase 8:
+     * Phases, progress and result of testcase 8 are written as JSON lines
+     */
+    @Test public void testcase_8() throws Exception {
+        // Setup
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Election election = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        election.solver = SolverBackend.JAVA;
+        election.presolve = false;
+        election.metrics = new MetricsLog(new PrintStream(log, true));
+
+        // Run election
+        int democratWinCount = election.winCount(true, true, true);
+
+        // Check result
+        String[] lines = log.toString().trim().split("\n");
+        String events = String.join("\n", lines);
+        for (String phase : new String[]{"parse", "build", "optimize", "verify"}) {
+            assertTrue(events.contains("\"event\":\"phase\",\"source\":\"dem_tc_8.in\",\"phase\":\"" + phase + "\""));
+        }
+        assertTrue(events.contains("\"event\":\"progress\""));
+        assertTrue(lines[lines.length - 1].startsWith("{\"event\":\"result\""));
+        assertTrue(lines[lines.length - 1].contains("\"status\":2,\"demWins\":5,\"repWins\":5"));
+        for (String line : lines) {
+            assertTrue(line.startsWith("{") && line.endsWith("}"));
+        }
+    }
+}
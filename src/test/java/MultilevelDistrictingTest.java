@@ -0,0 +1,109 @@
+import org.junit.Test;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MultilevelDistrictingTest {
+
+    /**
+     * Testcase 1:
+     * Not enough districts
+     */
+    @Test public void testcase_1() throws Exception {
+        // Setup
+        MultilevelDistricting multilevel = new MultilevelDistricting(readCells(1), Election.B, 1, true);
+        multilevel.solver = SolverBackend.JAVA;
+
+        // Run pipeline
+        MultilevelDistricting.Result result = multilevel.solve();
+
+        // Check result
+        assertNull(result);
+    }
+
+    /**
+     * Testcase 8:
+     * 5 district won by republicans, 5 by democrats, blocks of 2 cells are too few for 10 districts
+     */
+    @Test public void testcase_8() throws Exception {
+        // Setup
+        MultilevelDistricting multilevel = new MultilevelDistricting(readCells(8), Election.B, 1, true);
+        multilevel.solver = SolverBackend.JAVA;
+        multilevel.blockSize = 2;
+
+        // Run pipeline
+        MultilevelDistricting.Result result = multilevel.solve();
+
+        // Check result
+        assertEquals(1, result.blockSize);
+        assertEquals(5, result.wins);
+        assertEquals(5, result.bound);
+    }
+
+    /**
+     * Testcase 14:
+     * Blocks of two republican cells spoil whole coarse districts, on the cells every republican
+     * cell joins three democrat cells
+     */
+    @Test public void testcase_14() throws Exception {
+        // Setup
+        MultilevelDistricting multilevel = new MultilevelDistricting(readCells(14), Election.B, 4, true);
+        multilevel.solver = SolverBackend.JAVA;
+        multilevel.blockSize = 2;
+        multilevel.timeLimit = 1;
+
+        // Run pipeline
+        MultilevelDistricting.Result result = multilevel.solve();
+
+        // Check result
+        assertEquals(2, result.blockSize);
+        assertTrue(result.coarseWins <= 7);
+        assertEquals(10, result.wins);
+        assertEquals(10, result.bound);
+        assertEquals(1, result.rounds);
+    }
+
+    /**
+     * Testcase 17:
+     * Generated grid, the cells of the city blocks are spread over the districts
+     */
+    @Test public void testcase_17() throws Exception {
+        // Setup
+        CellIndex cells = new VoteGridGenerator(40, 40, 1).generate();
+        int districtSize = cells.count / Election.B;
+        MultilevelDistricting multilevel = new MultilevelDistricting(cells, Election.B, districtSize, true);
+        multilevel.solver = SolverBackend.JAVA;
+        multilevel.blockSize = 4;
+
+        // Run pipeline
+        MultilevelDistricting.Result result = multilevel.solve();
+
+        // Check result
+        assertTrue(result.unitCount > result.blockCount);
+        assertEquals(10, result.wins);
+        assertEquals(10, result.bound);
+
+        // Check assignment
+        int[] size = new int[Election.B];
+        long[] margin = new long[Election.B];
+        for (int i = 0; i < cells.count; i++) {
+            size[result.district[i]]++;
+            margin[result.district[i]] += cells.d[i] - cells.r[i];
+        }
+        int wins = 0;
+        for (int b = 0; b < Election.B; b++) {
+            assertTrue(size[b] >= districtSize);
+            wins += margin[b] > 0 ? 1 : 0;
+        }
+        assertEquals(10, wins);
+    }
+
+    private CellIndex readCells(int testcase) throws Exception {
+        ClassLoader classLoader = getClass().getClassLoader();
+        return VoteGridReader.readCells(new File(classLoader.getResource("dem_tc_" + testcase + ".in").getFile()),
+                new File(classLoader.getResource("rep_tc_" + testcase + ".in").getFile()));
+    }
+}
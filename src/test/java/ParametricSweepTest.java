@@ -0,0 +1,59 @@
+import org.junit.Test;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ParametricSweepTest {
+
+    /**
+     * Testcase 8:
+     * 5 democrat and 5 republican cells, the sweep with reuse leads to the cold results with fewer solves
+     */
+    @Test public void testcase_8() throws Exception {
+        // Setup
+        ParametricSweep sweep = new ParametricSweep("dem_tc_8.in", "rep_tc_8.in", true);
+        sweep.solver = SolverBackend.JAVA;
+        ParametricSweep cold = new ParametricSweep("dem_tc_8.in", "rep_tc_8.in", true);
+        cold.solver = SolverBackend.JAVA;
+        cold.reuse = false;
+
+        // Run sweeps
+        List<ParametricSweep.Point> points = sweep.run(1, 10, 1, 2);
+        List<ParametricSweep.Point> coldPoints = cold.run(1, 10, 1, 2);
+
+        // Check result
+        assertEquals(20, points.size());
+        for (int p = 0; p < points.size(); p++) {
+            assertEquals(coldPoints.get(p).status, points.get(p).status);
+            assertEquals(coldPoints.get(p).wins, points.get(p).wins);
+        }
+        assertEquals(20, cold.solveCount);
+        assertTrue(sweep.solveCount < 5);
+    }
+
+    /**
+     * Testcase 13:
+     * Two republican strongholds, the greedy districtings reach the bounds of the smaller districts
+     */
+    @Test public void testcase_13() throws Exception {
+        // Setup
+        ParametricSweep sweep = new ParametricSweep("dem_tc_13.in", "rep_tc_13.in", true);
+        sweep.solver = SolverBackend.JAVA;
+
+        // Run sweep
+        List<ParametricSweep.Point> points = sweep.run(3, 4, 1, 3);
+
+        // Check result
+        assertEquals(0, sweep.solveCount);
+        int[] wins = {3, 3, 3, 4, 4, 0};
+        for (int p = 0; p < points.size(); p++) {
+            ParametricSweep.Point point = points.get(p);
+            assertFalse(point.solved);
+            assertEquals(wins[p], point.wins);
+        }
+        assertEquals(MipModel.INFEASIBLE, points.get(5).status);
+    }
+}
@@ -0,0 +1,65 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ResultCacheTest {
+
+    /**
+     * Testcase 8:
+     * Results of testcase 8 are reused from the result cache, a different M is a new entry and the
+     * least recently used entry is evicted once the cache holds more than two entries
+     */
+    @Test public void testcase_8() throws Exception {
+        // Setup
+        File directory = Files.createTempDirectory("tc_24").toFile();
+        directory.deleteOnExit();
+        ResultCache probe = new ResultCache(directory.getPath(), Long.MAX_VALUE);
+        Election first = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        first.solver = SolverBackend.JAVA;
+        first.resultCache = probe;
+        first.winCount(true, true, true);
+        long entryBytes = directory.listFiles()[0].length();
+        ResultCache cache = new ResultCache(directory.getPath(), 2 * entryBytes);
+
+        // Run elections
+        Election reused = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        reused.solver = SolverBackend.JAVA;
+        reused.resultCache = cache;
+        reused.winCount(true, true, true);
+        Election otherM = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 3);
+        otherM.solver = SolverBackend.JAVA;
+        otherM.resultCache = cache;
+        otherM.winCount(true, true, true);
+        Election otherGrid = new Election("dem_tc_3.in", "rep_tc_3.in", 1, 2);
+        otherGrid.solver = SolverBackend.JAVA;
+        otherGrid.resultCache = cache;
+        otherGrid.winCount(true, true, true);
+        Election evicted = new Election("dem_tc_8.in", "rep_tc_8.in", 1, 2);
+        evicted.solver = SolverBackend.JAVA;
+        evicted.resultCache = cache;
+        evicted.winCount(true, true, true);
+
+        // Check result
+        assertFalse(first.resultReused);
+        assertTrue(reused.resultReused);
+        assertTrue(reused.status == MipModel.OPTIMAL);
+        assertEquals(5, reused.demVictoryCount);
+        assertEquals(5, reused.repVictoryCount);
+        assertTrue(Arrays.equals(first.district, reused.district));
+        assertFalse(otherM.resultReused);
+        assertFalse(otherGrid.resultReused);
+        assertFalse(evicted.resultReused);
+        assertEquals(1, cache.hitCount);
+        assertEquals(3, cache.missCount);
+        assertEquals(2, directory.listFiles().length);
+        for (File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import org.junit.Test;
+
+import java.io.File;
+
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+public class VoteGridGeneratorTest {
+
+    /**
+     * Testcase 1:
+     * Generated grid is reproducible by its seed and is read back unchanged
+     */
+    @Test public void testcase_1() throws Exception {
+        // Setup
+        File democratFile = File.createTempFile("dem_tc_17", ".in");
+        File republicanFile = File.createTempFile("rep_tc_17", ".in");
+        democratFile.deleteOnExit();
+        republicanFile.deleteOnExit();
+        CellIndex cells = new VoteGridGenerator(120, 80, 17).generate();
+
+        // Run generator
+        VoteGridGenerator.writeText(cells, democratFile, republicanFile);
+        CellIndex read = VoteGridReader.readCells(democratFile, republicanFile);
+        CellIndex again = new VoteGridGenerator(120, 80, 17).generate();
+
+        // Check result
+        assertTrue(cells.count > 0 && cells.count < 120 * 80);
+        assertEquals(cells.count, read.count);
+        assertEquals(cells.count, again.count);
+        for (int i = 0; i < cells.count; i++) {
+            assertEquals(cells.x[i], read.x[i]);
+            assertEquals(cells.y[i], read.y[i]);
+            assertEquals(cells.d[i], read.d[i]);
+            assertEquals(cells.r[i], read.r[i]);
+            assertEquals(cells.d[i], again.d[i]);
+            assertEquals(cells.r[i], again.r[i]);
+        }
+    }
+}